@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 import org.jetbrains.annotations.ApiStatus.ScheduledForRemoval;
@@ -20,35 +21,98 @@ import de.geolykt.starloader.deobf.access.AccessFlagModifier.Type;
 @ScheduledForRemoval(inVersion = "5.0.0")
 public final class AccessTransformInfo {
 
+    /**
+     * The modifiers targeting a single class, indexed by the member they target.
+     */
+    private static final class ClassModifiers {
+        private final List<AccessFlagModifier> classModifiers = new ArrayList<>();
+        private final Map<String, List<AccessFlagModifier>> fieldModifiers = new HashMap<>();
+        private final Map<String, List<AccessFlagModifier>> methodModifiers = new HashMap<>();
+    }
+
     final List<AccessFlagModifier> modifiers = new ArrayList<>();
 
-    public List<AccessFlagModifier> getModifiers() {
-        return Collections.unmodifiableList(modifiers);
+    /**
+     * Index of {@link #modifiers} by the internal name of the targeted class.
+     */
+    private final Map<String, ClassModifiers> index = new ConcurrentHashMap<>();
+
+    private static String getMemberKey(String name, String descriptor) {
+        return name + ':' + descriptor;
     }
 
-    public boolean apply(ClassNode node, boolean runtime) {
+    private static boolean applyAll(List<AccessFlagModifier> modifiers, boolean runtime, int[] access) {
         boolean modified = false;
         for (AccessFlagModifier mod : modifiers) {
-            if ((runtime && mod.isCompileOnly) || !mod.clazz.equals(node.name)) {
+            if (runtime && mod.isCompileOnly) {
                 continue;
             }
-            if (mod.type == Type.CLASS) {
-                node.access = mod.apply(node.access);
+            access[0] = mod.apply(access[0]);
+            modified = true;
+        }
+        return modified;
+    }
+
+    void addModifier(AccessFlagModifier modifier) {
+        modifiers.add(modifier);
+        ClassModifiers classModifiers = index.computeIfAbsent(modifier.clazz, key -> new ClassModifiers());
+        if (modifier.type == Type.CLASS) {
+            classModifiers.classModifiers.add(modifier);
+        } else if (modifier.type == Type.METHOD) {
+            classModifiers.methodModifiers.computeIfAbsent(getMemberKey(modifier.name.get(), modifier.descriptor.get()), key -> new ArrayList<>()).add(modifier);
+        } else if (modifier.type == Type.FIELD) {
+            classModifiers.fieldModifiers.computeIfAbsent(getMemberKey(modifier.name.get(), modifier.descriptor.get()), key -> new ArrayList<>()).add(modifier);
+        }
+    }
+
+    public List<AccessFlagModifier> getModifiers() {
+        return Collections.unmodifiableList(modifiers);
+    }
+
+    /**
+     * Checks whether any modifier targets the class with the given internal name.
+     *
+     * @param internalName The internal name of the class
+     * @return True if {@link #apply(ClassNode, boolean)} could modify the class
+     */
+    public boolean isTarget(String internalName) {
+        return index.containsKey(internalName);
+    }
+
+    public boolean apply(ClassNode node, boolean runtime) {
+        ClassModifiers classModifiers = index.get(node.name);
+        if (classModifiers == null) {
+            return false;
+        }
+        boolean modified = false;
+        int[] access = new int[1];
+        if (!classModifiers.classModifiers.isEmpty()) {
+            access[0] = node.access;
+            if (applyAll(classModifiers.classModifiers, runtime, access)) {
+                node.access = access[0];
                 modified = true;
-            } else if (mod.type == Type.METHOD) {
-                for (MethodNode method : node.methods) {
-                    if (mod.name.get().equals(method.name) && mod.descriptor.get().equals(method.desc)) {
-                        method.access = mod.apply(method.access);
+            }
+        }
+        if (!classModifiers.methodModifiers.isEmpty()) {
+            for (MethodNode method : node.methods) {
+                List<AccessFlagModifier> methodModifiers = classModifiers.methodModifiers.get(getMemberKey(method.name, method.desc));
+                if (methodModifiers != null) {
+                    access[0] = method.access;
+                    if (applyAll(methodModifiers, runtime, access)) {
+                        method.access = access[0];
                         modified = true;
-                        break;
                     }
                 }
-            } else if (mod.type == Type.FIELD) {
-                for (FieldNode field : node.fields) {
-                    if (mod.name.get().equals(field.name) && mod.descriptor.get().equals(field.desc)) {
-                        field.access = mod.apply(field.access);
+            }
+        }
+        if (!classModifiers.fieldModifiers.isEmpty()) {
+            for (FieldNode field : node.fields) {
+                List<AccessFlagModifier> fieldModifiers = classModifiers.fieldModifiers.get(getMemberKey(field.name, field.desc));
+                if (fieldModifiers != null) {
+                    access[0] = field.access;
+                    if (applyAll(fieldModifiers, runtime, access)) {
+                        field.access = access[0];
                         modified = true;
-                        break;
                     }
                 }
             }
@@ -148,7 +148,7 @@ public class AccessWidenerReader implements AutoCloseable {
         }
 
         if (!(runtime && compileOnly)) {
-            atInfo.modifiers.add(modifier);
+            atInfo.addModifier(modifier);
         }
         return true;
     }
@@ -1,17 +1,70 @@
 package de.geolykt.starloader.launcher;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.Mixins;
+import org.spongepowered.asm.mixin.transformer.Config;
 import org.spongepowered.asm.mixin.transformer.IMixinTransformer;
 import org.spongepowered.asm.mixin.transformer.IMixinTransformerFactory;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import net.minestom.server.extras.selfmodification.MinestomRootClassLoader;
+
 import de.geolykt.starloader.launcher.service.SLMixinService;
 import de.geolykt.starloader.transformers.ASMTransformer;
+import de.geolykt.starloader.transformers.TransformationTargets;
 
 public final class ASMMixinTransformer extends ASMTransformer {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ASMMixinTransformer.class);
+    private static final Gson GSON = new Gson();
+    private static final String MIXIN_ANNOTATION_DESC = "Lorg/spongepowered/asm/mixin/Mixin;";
+
     private final IMixinTransformer transformer;
+    private final SLMixinService service;
+
+    /**
+     * The internal names of all classes targeted by the mixins of the registered mixin configurations.
+     * Null if filtering was not yet enabled or the targets cannot be computed, in which case every class is a potential target.
+     */
+    @Nullable
+    private volatile Set<String> targets;
+
+    /**
+     * Whether {@link #isValidTarget(String)} is restricted to {@link #targets}, as enabled by {@link #computeTargets()}.
+     */
+    private volatile boolean filterTargets;
+
+    /**
+     * The targets of every mixin configuration recorded by {@link #refreshTargets()}, keyed by the name of the configuration.
+     * {@link Mixins#getConfigs()} only returns configurations which were not yet selected, so the targets of
+     * a configuration need to be recorded before mixin selects it, which happens once the first class is transformed after
+     * the configuration was registered. A null value denotes a configuration whose targets cannot be determined.
+     * Guarded by the lock on this map.
+     */
+    @NotNull
+    private final Map<String, @Nullable Set<String>> configTargets = new HashMap<>();
 
     public ASMMixinTransformer(SLMixinService service) {
         IMixinTransformerFactory factory = service.getMixinInternal(IMixinTransformerFactory.class);
@@ -19,17 +72,178 @@ public final class ASMMixinTransformer extends ASMTransformer {
             throw new NullPointerException("Unable to create IMixinTransformer instance as it's factory went unregistered.");
         }
         transformer = factory.createTransformer();
+        this.service = service;
+        // Record the configurations registered while bootstrapping mixin before any class is transformed
+        refreshTargets();
     }
 
     @Override
     public boolean accept(@NotNull ClassNode source) {
+        if (Mixins.getUnvisitedCount() != 0 && recordConfigs(true) && this.filterTargets) {
+            // Mixin is about to select the configurations, which removes them from Mixins.getConfigs()
+            publishTargets();
+        }
         boolean ret = transformer.transformClass(MixinEnvironment.getEnvironment(MixinEnvironment.Phase.DEFAULT), source.name.replace("/", "."), source);
         return ret;
     }
 
+    /**
+     * Restricts {@link #isValidTarget(String)} to the classes targeted by the registered mixin configurations.
+     * This should be called once mixin reaches the DEFAULT phase, at which point all mixin configurations of the
+     * initially loaded extensions are registered.
+     *
+     * <p>Afterwards, {@link #refreshTargets()} needs to be called whenever further configurations are registered.
+     */
+    public void computeTargets() {
+        this.filterTargets = true;
+        recordConfigs(false);
+        publishTargets();
+    }
+
+    /**
+     * Records the classes targeted by newly registered mixin configurations. Should filtering have been enabled
+     * via {@link #computeTargets()}, the targets are added to the set of targets. This method needs to be called whenever
+     * mixin configurations are registered, before any further class is loaded.
+     */
+    public void refreshTargets() {
+        if (recordConfigs(false) && this.filterTargets) {
+            publishTargets();
+        }
+    }
+
+    /**
+     * Records the targets of all mixin configurations which were not yet selected by mixin.
+     *
+     * @param unexpected Whether all configurations should have been recorded already, in which case
+     * recording further configurations while filtering is enabled is reported as an error
+     * @return True if any configuration was recorded
+     */
+    private boolean recordConfigs(boolean unexpected) {
+        boolean recorded = false;
+        synchronized (this.configTargets) {
+            for (Config config : Mixins.getConfigs()) {
+                if (this.configTargets.containsKey(config.getName())) {
+                    continue;
+                }
+                if (unexpected && this.filterTargets) {
+                    LOGGER.error("Mixin configuration {} was registered without refreshing the targets of the mixin transformer. "
+                            + "Classes targeted by it that were loaded in the meantime were not transformed.", config.getName());
+                }
+                Set<String> targets = new HashSet<>();
+                if (!collectTargets(config, targets)) {
+                    LOGGER.info("Unable to determine the targets of mixin configuration {}; All classes will be passed through mixin.", config.getName());
+                    targets = null;
+                }
+                this.configTargets.put(config.getName(), targets);
+                recorded = true;
+            }
+        }
+        return recorded;
+    }
+
+    /**
+     * Restricts {@link #isValidTarget(String)} to the union of the targets of all recorded configurations.
+     */
+    private void publishTargets() {
+        synchronized (this.configTargets) {
+            Set<String> targets = new HashSet<>();
+            for (Set<String> configTargets : this.configTargets.values()) {
+                if (configTargets == null) {
+                    targets = null;
+                    break;
+                }
+                targets.addAll(configTargets);
+            }
+            this.targets = targets == null ? null : Collections.unmodifiableSet(targets);
+        }
+        MinestomRootClassLoader.getInstance().invalidateTransformerIndex();
+    }
+
+    private boolean collectTargets(@NotNull Config config, @NotNull Set<String> out) {
+        JsonObject json;
+        try (InputStream in = this.service.getResourceAsStream(config.getName())) {
+            if (in == null) {
+                return false;
+            }
+            json = GSON.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), JsonObject.class);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to read mixin configuration {}", config.getName(), e);
+            return false;
+        }
+        JsonElement plugin = json == null ? null : json.get("plugin");
+        if (json == null || (plugin != null && !plugin.isJsonNull())) {
+            // Plugins are able to register further mixins on their own
+            return false;
+        }
+        String mixinPackage = config.getConfig().getMixinPackage();
+        for (String key : new String[] {"mixins", "client", "server"}) {
+            JsonElement mixins = json.get(key);
+            if (mixins == null || !mixins.isJsonArray()) {
+                continue;
+            }
+            for (JsonElement mixin : mixins.getAsJsonArray()) {
+                if (!collectTargets(mixinPackage + mixin.getAsString(), out)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean collectTargets(@NotNull String mixinClass, @NotNull Set<String> out) {
+        ClassNode node = new ClassNode();
+        try {
+            byte[] bytes = MinestomRootClassLoader.getInstance().loadBytesWithChildren(mixinClass, false);
+            new ClassReader(bytes).accept(node, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            LOGGER.warn("Unable to read mixin class {}", mixinClass, e);
+            return false;
+        }
+        boolean found = collectTargets(node.invisibleAnnotations, out);
+        found |= collectTargets(node.visibleAnnotations, out);
+        return found;
+    }
+
+    private boolean collectTargets(@Nullable List<AnnotationNode> annotations, @NotNull Set<String> out) {
+        if (annotations == null) {
+            return false;
+        }
+        for (AnnotationNode annotation : annotations) {
+            if (!annotation.desc.equals(MIXIN_ANNOTATION_DESC) || annotation.values == null) {
+                continue;
+            }
+            for (int i = 0; i < annotation.values.size(); i += 2) {
+                String name = (String) annotation.values.get(i);
+                Object value = annotation.values.get(i + 1);
+                if (name.equals("value")) {
+                    for (Object type : (List<?>) value) {
+                        out.add(((Type) type).getInternalName());
+                    }
+                } else if (name.equals("targets")) {
+                    for (Object target : (List<?>) value) {
+                        out.add(((String) target).replace('.', '/'));
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    @NotNull
+    public TransformationTargets getTargets() {
+        Set<String> targets = this.targets;
+        if (targets == null) {
+            return TransformationTargets.all();
+        }
+        return TransformationTargets.ofClasses(targets);
+    }
+
     @Override
     public boolean isValidTarget(@NotNull String internalName) {
-        return true; // TODO check whether we can evaluate whether a class is a target of a mixin or not
+        Set<String> targets = this.targets;
+        return targets == null || targets.contains(internalName);
     }
 
     @Override
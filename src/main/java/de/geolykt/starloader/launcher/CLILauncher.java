@@ -74,10 +74,12 @@ public class CLILauncher {
                 e.printStackTrace();
             }
         });
+        cl.startPrefetching();
 
         // Start mixins & load extensions
         Utils.startMixin(args);
-        cl.addASMTransformer(new ASMMixinTransformer(SLMixinService.getInstance()));
+        ASMMixinTransformer mixinTransformer = new ASMMixinTransformer(SLMixinService.getInstance());
+        cl.addASMTransformer(mixinTransformer);
         MixinExtrasBootstrap.init(); // The MixinExtras bootstrap MUST be initialized after the ASM transformer
         SLMixinService.getInstance().getPhaseConsumer().accept(Phase.PREINIT);
         // ensure extensions are loaded when starting the server
@@ -94,6 +96,8 @@ public class CLILauncher {
 
         SLMixinService.getInstance().getPhaseConsumer().accept(Phase.INIT);
         SLMixinService.getInstance().getPhaseConsumer().accept(Phase.DEFAULT);
+        mixinTransformer.computeTargets();
+        cl.pretransformPrefetchedClasses();
 
         // Find & launch main class
         String mainClass = System.getProperty("de.geolykt.starloader.launcher.CLILauncher.mainClass");
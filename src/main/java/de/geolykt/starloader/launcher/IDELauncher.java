@@ -132,6 +132,7 @@ public class IDELauncher {
 
         MinestomRootClassLoader cl = MinestomRootClassLoader.getInstance();
         bootPaths.forEach(cl::addURL);
+        cl.startPrefetching();
 
         if (inlineSPAnnotations) {
             LoggerFactory.getLogger(IDELauncher.class).info("Making use of the StarplaneAnnotationsInlineTransformer.");
@@ -140,7 +141,8 @@ public class IDELauncher {
 
         // Start mixins & load extensions
         Utils.startMixin(args);
-        cl.addASMTransformer(new ASMMixinTransformer(SLMixinService.getInstance()));
+        ASMMixinTransformer mixinTransformer = new ASMMixinTransformer(SLMixinService.getInstance());
+        cl.addASMTransformer(mixinTransformer);
         MixinExtrasBootstrap.init(); // The MixinExtras bootstrap MUST be initialized after the ASM transformer
         SLMixinService.getInstance().getPhaseConsumer().accept(Phase.PREINIT);
 
@@ -155,6 +157,8 @@ public class IDELauncher {
 
         SLMixinService.getInstance().getPhaseConsumer().accept(Phase.INIT);
         SLMixinService.getInstance().getPhaseConsumer().accept(Phase.DEFAULT);
+        mixinTransformer.computeTargets();
+        cl.pretransformPrefetchedClasses();
         LoggerFactory.getLogger(IDELauncher.class).info("Starting main class " + mainClass + " with arguments " + Arrays.toString(args));
 
         try {
@@ -2,26 +2,28 @@ package de.geolykt.starloader.mod;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
-import java.util.jar.JarFile;
-import java.util.zip.ZipEntry;
+import java.util.stream.Collectors;
 
 import org.jetbrains.annotations.NotNull;
-import org.json.JSONObject;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.JsonParseException;
+
+import net.minestom.server.extras.selfmodification.JarIndexCache;
+
 import de.geolykt.starloader.util.JarFilter;
-import de.geolykt.starloader.util.JavaInterop;
 
 public class DirectoryExtensionPrototypeList extends ArrayList<@NotNull NamedExtensionPrototype> {
 
@@ -38,24 +40,33 @@ public class DirectoryExtensionPrototypeList extends ArrayList<@NotNull NamedExt
             LOGGER.warn("Unable to list files at {}", extensionFolder);
             return;
         }
-        for (File jarFile : jarFiles) {
-            try (JarFile jar = new JarFile(jarFile)) {
-                ZipEntry entry = jar.getEntry("extension.json");
-                if (entry == null) {
-                    continue;
-                }
-                JSONObject jsonObj;
-                try (InputStream is = jar.getInputStream(entry)) {
-                    if (is == null) {
-                        throw new AssertionError();
-                    }
-                    jsonObj = new JSONObject(new String(JavaInterop.readAllBytes(is), StandardCharsets.UTF_8));
-                }
-                this.add(new NamedExtensionPrototype(Collections.singletonList(jarFile.toURI().toURL()), jsonObj.getString("name"), jsonObj.optString("version", "unkown")));
-            } catch (IOException e) {
-                LOGGER.warn("Failed to load potential extension {}: {}", jarFile.getPath(), e);
-                continue;
+        // The jars are read in parallel, but the prototypes are added in the order the jars were listed in
+        this.addAll(Arrays.stream(jarFiles).parallel()
+                .map(DirectoryExtensionPrototypeList::readPrototype)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+    }
+
+    @Nullable
+    private static NamedExtensionPrototype readPrototype(@NotNull File jarFile) {
+        try {
+            byte[] descriptor = JarIndexCache.readEntry(jarFile.toPath(), "extension.json");
+            if (descriptor == null) {
+                return null;
+            }
+            DiscoveredExtension extension = ExtensionManager.parseDescriptor(descriptor);
+            String name = extension == null ? null : extension.getDeclaredName();
+            if (extension == null || name == null) {
+                LOGGER.warn("Failed to load potential extension {}: The extension.json file does not specify a name", jarFile.getPath());
+                return null;
             }
+            String version = extension.getDeclaredVersion();
+            NamedExtensionPrototype prototype = new NamedExtensionPrototype(Collections.singletonList(jarFile.toURI().toURL()), name, version == null ? "unkown" : version);
+            prototype.descriptor = extension;
+            return prototype;
+        } catch (IOException | JsonParseException e) {
+            LOGGER.warn("Failed to load potential extension {}: {}", jarFile.getPath(), e);
+            return null;
         }
     }
 
@@ -8,6 +8,7 @@ import java.util.List;
 import org.jetbrains.annotations.ApiStatus.Internal;
 import org.jetbrains.annotations.ApiStatus.ScheduledForRemoval;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +43,28 @@ public final class DiscoveredExtension {
         return name;
     }
 
+    /**
+     * Obtains the name of the extension as declared by the extension.json file, which is null if no name was
+     * declared and the integrity of the extension was not yet {@link #verifyIntegrity(DiscoveredExtension) verified}.
+     *
+     * @return The declared name
+     */
+    @Nullable
+    String getDeclaredName() {
+        return this.name;
+    }
+
+    /**
+     * Obtains the version of the extension as declared by the extension.json file, which is null if no version was
+     * declared and the integrity of the extension was not yet {@link #verifyIntegrity(DiscoveredExtension) verified}.
+     *
+     * @return The declared version
+     */
+    @Nullable
+    String getDeclaredVersion() {
+        return this.version;
+    }
+
     @SuppressWarnings("null")
     @NotNull
     public String getEntrypoint() {
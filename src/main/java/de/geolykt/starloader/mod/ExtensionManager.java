@@ -1,23 +1,28 @@
 package de.geolykt.starloader.mod;
 
 import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.UncheckedIOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
-import java.net.URLClassLoader;
+import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Objects;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -32,10 +37,13 @@ import org.slf4j.LoggerFactory;
 import org.spongepowered.asm.mixin.Mixins;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 
+import net.minestom.server.extras.selfmodification.JarIndexCache;
 import net.minestom.server.extras.selfmodification.MinestomExtensionClassLoader;
 import net.minestom.server.extras.selfmodification.MinestomRootClassLoader;
 
+import de.geolykt.starloader.launcher.ASMMixinTransformer;
 import de.geolykt.starloader.mod.DiscoveredExtension.LoadStatus;
 import de.geolykt.starloader.mod.Extension.ExtensionDescription;
 import de.geolykt.starloader.transformers.ASMTransformer;
@@ -68,6 +76,55 @@ public class ExtensionManager {
      */
     static final ThreadLocal<ExtensionDescription> CURRENTLY_LOADED_EXTENSION = new ThreadLocal<>();
 
+    /**
+     * The order in which extensions are loaded in, as computed by {@link ExtensionManager#generateLoadOrder(List)}.
+     */
+    static final class LoadOrder {
+        @NotNull
+        private final List<List<DiscoveredExtension>> levels;
+        @NotNull
+        private final List<List<DiscoveredExtension>> cycles;
+
+        private LoadOrder(@NotNull List<List<DiscoveredExtension>> levels, @NotNull List<List<DiscoveredExtension>> cycles) {
+            this.levels = levels;
+            this.cycles = cycles;
+        }
+
+        /**
+         * Obtains the dependency cycles which prevented extensions from being loaded. Each cycle is listed in dependency order:
+         * Every extension depends on the next extension, while the last extension depends on the first one.
+         *
+         * @return The dependency cycles
+         */
+        @NotNull
+        List<List<DiscoveredExtension>> getCycles() {
+            return this.cycles;
+        }
+
+        /**
+         * Obtains the levels of the load order. The extensions of a level only depend on extensions of earlier levels
+         * and may thus be loaded independently of each other once all earlier levels are loaded.
+         *
+         * @return The levels, in the order they need to be loaded in
+         */
+        @NotNull
+        List<List<DiscoveredExtension>> getLevels() {
+            return this.levels;
+        }
+
+        /**
+         * Obtains the extensions of all levels, in the order they should be loaded in.
+         *
+         * @return A new, mutable list of the extensions
+         */
+        @NotNull
+        List<DiscoveredExtension> getLoadOrder() {
+            List<DiscoveredExtension> order = new LinkedList<>();
+            this.levels.forEach(order::addAll);
+            return order;
+        }
+    }
+
     public ExtensionManager() {
     }
 
@@ -78,7 +135,7 @@ public class ExtensionManager {
         this.loaded = true;
 
         List<DiscoveredExtension> discoveredExtensions = discoverExtensions(extensionCandidates);
-        discoveredExtensions = generateLoadOrder(discoveredExtensions);
+        discoveredExtensions = generateLoadOrder(discoveredExtensions).getLoadOrder();
         loadDependencies(discoveredExtensions);
         // remove invalid extensions
         assert discoveredExtensions != null;
@@ -199,144 +256,385 @@ public class ExtensionManager {
         return extension;
     }
 
+    /**
+     * Discovers the enabled extensions among the given candidates. The descriptors of the candidates are read
+     * in parallel, but the returned list retains the order of the candidates.
+     *
+     * @param extensionCandidates The candidates
+     * @return The discovered extensions that can be loaded
+     */
     @NotNull
     private List<DiscoveredExtension> discoverExtensions(List<@NotNull ? extends ExtensionPrototype> extensionCandidates) {
-        List<DiscoveredExtension> extensions = new LinkedList<>();
-        for (ExtensionPrototype prototype : extensionCandidates) {
-            if (prototype.enabled) {
-                DiscoveredExtension extension = discoverFromURLs(prototype.originURLs);
-                if (extension != null && extension.getLoadStatus() == DiscoveredExtension.LoadStatus.LOAD_SUCCESS) {
-                    extensions.add(extension);
-                }
-            }
-        }
-        return extensions;
+        return extensionCandidates.parallelStream()
+                .filter(prototype -> prototype.enabled)
+                .map(this::discoverFromPrototype)
+                .filter(extension -> extension != null && extension.getLoadStatus() == DiscoveredExtension.LoadStatus.LOAD_SUCCESS)
+                .collect(Collectors.toCollection(LinkedList::new));
+    }
+
+    @Nullable
+    private DiscoveredExtension discoverFromPrototype(@NotNull ExtensionPrototype prototype) {
+        DiscoveredExtension extension = prototype.descriptor;
+        if (extension == null) {
+            return this.discoverFromURLs(prototype.originURLs);
+        }
+        // The descriptor is mutated during discovery, so it can only be used once
+        prototype.descriptor = null;
+        return this.discover(extension, prototype.originURLs);
     }
 
     @Nullable
     private DiscoveredExtension discoverFromURLs(List<URL> urls) {
-        URLClassLoader discardLoader = MinestomRootClassLoader.getInstance().newChild(urls.toArray(new @NotNull URL[0]));
+        byte[] descriptor;
         try {
-            URL resource = discardLoader.findResource("extension.json");
-            if (resource == null) {
+            descriptor = ExtensionManager.readDescriptor(urls);
+            if (descriptor == null) {
                 throw new IOException("Extension does not have an extension.json file: " + urls);
             }
-            try (InputStreamReader reader = new InputStreamReader(resource.openStream())) {
-                @SuppressWarnings("null")
-                DiscoveredExtension extension = GSON.fromJson(reader, DiscoveredExtension.class);
-                if (Objects.isNull(extension)) {
-                    LOGGER.error("No mods found for URLs {}", urls);
-                    return null;
-                }
-                extension.files.addAll(urls);
+        } catch (IOException e) {
+            LOGGER.error("Unable to read the extension.json file of the extension at {}", urls, e);
+            return null;
+        }
+        DiscoveredExtension extension;
+        try {
+            extension = ExtensionManager.parseDescriptor(descriptor);
+        } catch (JsonParseException e) {
+            LOGGER.error("Malformed extension.json file in extension at {}", urls, e);
+            return null;
+        }
+        if (extension == null) {
+            LOGGER.error("No mods found for URLs {}", urls);
+            return null;
+        }
+        return this.discover(extension, urls);
+    }
+
+    @NotNull
+    private DiscoveredExtension discover(@NotNull DiscoveredExtension extension, List<URL> urls) {
+        extension.files.addAll(urls);
 
-                // Verify integrity and ensure defaults
-                DiscoveredExtension.verifyIntegrity(extension);
+        // Verify integrity and ensure defaults
+        DiscoveredExtension.verifyIntegrity(extension);
+        return extension;
+    }
 
-                // FIXME Remove from source
-                /*if (extension.getLoadStatus() == LoadStatus.LOAD_SUCCESS) {
-                    extension.loader = this.newClassLoader(extension, urls.toArray(new @NotNull URL[0]));
-                }*/
+    /**
+     * Parses the contents of an extension.json file.
+     *
+     * @param descriptor The contents of the file
+     * @return The parsed extension, whose integrity is not yet verified. Null if the file is empty.
+     * @throws JsonParseException If the file is malformed
+     */
+    @Nullable
+    static DiscoveredExtension parseDescriptor(byte @NotNull[] descriptor) {
+        return GSON.fromJson(new String(descriptor, StandardCharsets.UTF_8), DiscoveredExtension.class);
+    }
 
-                discardLoader.close();
-                return extension;
-            }
-        } catch (IOException e) {
-            try {
-                discardLoader.close();
-            } catch (IOException e2) {
-                UncheckedIOException unchecked = new UncheckedIOException("Cannot close temporary discard classloader", e2);
-                unchecked.addSuppressed(e);
-                throw unchecked;
+    /**
+     * Reads the extension.json file from the first URL containing it, following the lookup rules of the
+     * {@link java.net.URLClassLoader}. Jars are read through the {@link JarIndexCache}, which shares the index of the jar
+     * with the classloader of the extension.
+     *
+     * @param urls The URLs of the extension
+     * @return The contents of the file, or null if no URL contains the file
+     * @throws IOException If an URL could not be read
+     */
+    private static byte @Nullable[] readDescriptor(@NotNull List<URL> urls) throws IOException {
+        for (URL url : urls) {
+            byte[] descriptor = null;
+            if (url.getProtocol().equals("file")) {
+                Path path;
+                try {
+                    path = Paths.get(url.toURI());
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    throw new IOException("Invalid extension URL: " + url, e);
+                }
+                if (Files.isDirectory(path)) {
+                    Path file = path.resolve("extension.json");
+                    if (Files.isRegularFile(file)) {
+                        descriptor = Files.readAllBytes(file);
+                    }
+                } else if (Files.isRegularFile(path)) {
+                    descriptor = JarIndexCache.readEntry(path, "extension.json");
+                }
+            } else {
+                URL resource = url.getFile().endsWith("/") ? new URL(url, "extension.json") : new URL("jar:" + url.toExternalForm() + "!/extension.json");
+                try (InputStream in = resource.openStream()) {
+                    descriptor = JavaInterop.readAllBytes(in);
+                } catch (FileNotFoundException e) {
+                    // The URL does not contain the file
+                }
             }
-            e.printStackTrace();
-            return null;
-        } catch (Throwable t) {
-            try {
-                discardLoader.close();
-            } catch (IOException e) {
-                UncheckedIOException unchecked = new UncheckedIOException("Cannot close temporary discard classloader", e);
-                unchecked.addSuppressed(t);
-                throw unchecked;
+            if (descriptor != null) {
+                return descriptor;
             }
-            throw t;
         }
+        return null;
     }
 
-    @Nullable
-    private List<DiscoveredExtension> generateLoadOrder(@NotNull List<DiscoveredExtension> discoveredExtensions) {
+    /**
+     * Computes the order in which extensions should be loaded in, so that every extension is loaded after it's dependencies.
+     *
+     * <p>The order is computed through a topological sort (Kahn's algorithm) in time linear to the amount of extensions
+     * and dependencies. Extensions are grouped into {@link LoadOrder#getLevels() levels}: Every extension only depends
+     * on extensions of earlier levels or extensions that are already loaded, which means that the extensions of a
+     * single level do not depend on each other. Within a level, the extensions retain the order they were discovered in.
+     *
+     * <p>Extensions with missing dependencies, extensions that are part of a dependency cycle and extensions depending
+     * on either of them are not part of the load order and have their load status set to
+     * {@link LoadStatus#MISSING_DEPENDENCIES}.
+     *
+     * @param discoveredExtensions The extensions to sort
+     * @return The load order
+     */
+    @NotNull
+    private LoadOrder generateLoadOrder(@NotNull List<DiscoveredExtension> discoveredExtensions) {
+        DiscoveredExtension[] nodes = discoveredExtensions.toArray(new DiscoveredExtension[0]);
+        int count = nodes.length;
+
         // Do some mapping so we can map strings to extensions.
-        Map<String, DiscoveredExtension> extensionMap = new HashMap<>();
-        Map<DiscoveredExtension, List<DiscoveredExtension>> dependencyMap = new HashMap<>();
-        for (DiscoveredExtension discoveredExtension : discoveredExtensions) {
-            extensionMap.put(discoveredExtension.getName().toLowerCase(), discoveredExtension);
+        Map<String, Integer> indices = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            indices.put(nodes[i].getName().toLowerCase(Locale.ROOT), i);
+        }
+
+        // dependencies[i] are the indices of the extensions node i depends on, dependents[i] the indices of the
+        // extensions depending on node i. Dependencies on extensions that are already loaded are always satisfied.
+        List<List<Integer>> dependencies = new ArrayList<>(count);
+        List<List<Integer>> dependents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            dependencies.add(new ArrayList<>());
+            dependents.add(new ArrayList<>());
+        }
+        boolean[] failed = new boolean[count];
+        Deque<Integer> failedQueue = new ArrayDeque<>();
+        for (int i = 0; i < count; i++) {
+            DiscoveredExtension discoveredExtension = nodes[i];
+            for (String dependencyName : discoveredExtension.getDependencies()) {
+                Integer dependency = indices.get(dependencyName.toLowerCase(Locale.ROOT));
+                if (dependency != null) {
+                    dependencies.get(i).add(dependency);
+                    dependents.get(dependency).add(i);
+                } else if (!this.extensions.containsKey(dependencyName.toLowerCase(Locale.ROOT))) {
+                    // Specifies an extension we don't have and that is not already loaded either (the latter happens with dynamic (re)loading)
+                    LOGGER.error("Extension {} requires an extension called {}.", discoveredExtension.getName(), dependencyName);
+                    LOGGER.error("However the extension {} could not be found.", dependencyName);
+                    LOGGER.error("Therefore {} will not be loaded.", discoveredExtension.getName());
+                    if (!failed[i]) {
+                        failed[i] = true;
+                        failedQueue.add(i);
+                    }
+                }
+            }
         }
 
-        for (DiscoveredExtension discoveredExtension : discoveredExtensions) {
+        // Extensions depending on an extension which cannot be loaded cannot be loaded either
+        while (!failedQueue.isEmpty()) {
+            int node = failedQueue.poll();
+            nodes[node].setLoadStatus(DiscoveredExtension.LoadStatus.MISSING_DEPENDENCIES);
+            for (int dependent : dependents.get(node)) {
+                if (!failed[dependent]) {
+                    LOGGER.error("Extension {} will not be loaded as it depends on {}, which cannot be loaded.", nodes[dependent].getName(), nodes[node].getName());
+                    failed[dependent] = true;
+                    failedQueue.add(dependent);
+                }
+            }
+        }
+
+        int[] inDegree = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (failed[i]) {
+                continue;
+            }
+            for (int dependency : dependencies.get(i)) {
+                if (!failed[dependency]) {
+                    inDegree[i]++;
+                }
+            }
+        }
 
-            @SuppressWarnings("null")
-            List<DiscoveredExtension> dependencies = Arrays.stream(discoveredExtension.getDependencies())
-                    .map(dependencyName -> {
-                        DiscoveredExtension dependencyExtension = extensionMap.get(dependencyName.toLowerCase());
-                        // Specifies an extension we don't have.
-                        if (dependencyExtension == null) {
-                            // attempt to see if it is not already loaded (happens with dynamic (re)loading)
-                            if (this.extensions.containsKey(dependencyName.toLowerCase(Locale.ROOT))) {
-                                return this.extensions.get(dependencyName.toLowerCase(Locale.ROOT)).getDescription().getOrigin();
-                            }
-                            LOGGER.error("Extension {} requires an extension called {}.", discoveredExtension.getName(), dependencyName);
-                            LOGGER.error("However the extension {} could not be found.", dependencyName);
-                            LOGGER.error("Therefore {} will not be loaded.", discoveredExtension.getName());
-                            discoveredExtension.setLoadStatus(DiscoveredExtension.LoadStatus.MISSING_DEPENDENCIES);
-                        }
-                        // This will return null for an unknown-extension
-                        return extensionMap.get(dependencyName.toLowerCase());
-                    }).collect(Collectors.toList());
-
-            // If the list contains null ignore it.
-            if (!dependencies.contains(null)) {
-                dependencyMap.put(
-                        discoveredExtension,
-                        dependencies
-                );
-            }
-        }
-
-        // List containing the real load order.
-        LinkedList<DiscoveredExtension> sortedList = new LinkedList<>();
-
-        // entries with empty lists
-        List<Map.Entry<DiscoveredExtension, List<DiscoveredExtension>>> loadableExtensions;
-        // While there are entries with no more elements (no more dependencies)
-        while (!(loadableExtensions = dependencyMap.entrySet().stream().filter(entry -> areAllDependenciesLoaded(entry.getValue())).collect(Collectors.toList())).isEmpty()) {
-            // Get all "loadable" (not actually being loaded!) extensions and put them in the sorted list.
-            for (Map.Entry<DiscoveredExtension, List<DiscoveredExtension>> entry : loadableExtensions) {
-                // Add to sorted list.
-                sortedList.add(entry.getKey());
-                // Remove to make the next iterations a little bit quicker (hopefully) and to find cyclic dependencies.
-                dependencyMap.remove(entry.getKey());
-                // Remove this dependency from all the lists (if they include it) to make way for next level of extensions.
-                dependencyMap.forEach((key, dependencyList) -> dependencyList.remove(entry.getKey()));
-            }
-        }
-
-        // Check if there are cyclic extensions.
-        if (!dependencyMap.isEmpty()) {
-            LOGGER.error("Minestom found {} cyclic extensions.", dependencyMap.size());
+        // Kahn's algorithm, one level at a time
+        List<List<DiscoveredExtension>> levels = new ArrayList<>();
+        boolean[] sorted = new boolean[count];
+        int[] current = new int[count];
+        int[] next = new int[count];
+        int currentSize = 0;
+        for (int i = 0; i < count; i++) {
+            if (!failed[i] && inDegree[i] == 0) {
+                current[currentSize++] = i;
+            }
+        }
+        int sortedCount = 0;
+        while (currentSize != 0) {
+            List<DiscoveredExtension> level = new ArrayList<>(currentSize);
+            int nextSize = 0;
+            for (int i = 0; i < currentSize; i++) {
+                int node = current[i];
+                sorted[node] = true;
+                level.add(nodes[node]);
+                for (int dependent : dependents.get(node)) {
+                    if (!failed[dependent] && --inDegree[dependent] == 0) {
+                        next[nextSize++] = dependent;
+                    }
+                }
+            }
+            sortedCount += currentSize;
+            levels.add(Collections.unmodifiableList(level));
+            // The indices are assigned in discovery order, which the next level retains
+            Arrays.sort(next, 0, nextSize);
+            int[] swap = current;
+            current = next;
+            next = swap;
+            currentSize = nextSize;
+        }
+
+        List<List<DiscoveredExtension>> cycles = new ArrayList<>();
+        int unsortedCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (!failed[i] && !sorted[i]) {
+                unsortedCount++;
+            }
+        }
+        if (unsortedCount != 0) {
+            LOGGER.error("Found {} extensions which cannot be loaded due to cyclic dependencies.", unsortedCount);
             LOGGER.error("Cyclic extensions depend on each other and can therefore not be loaded.");
-            for (Map.Entry<DiscoveredExtension, List<DiscoveredExtension>> entry : dependencyMap.entrySet()) {
-                DiscoveredExtension discoveredExtension = entry.getKey();
-                LOGGER.error("{} could not be loaded, as it depends on: {}.",
-                        discoveredExtension.getName(),
-                        entry.getValue().stream().map(DiscoveredExtension::getName).collect(Collectors.joining(", ")));
+            boolean[] cyclic = new boolean[count];
+            for (List<Integer> component : ExtensionManager.findStronglyConnectedComponents(dependencies, sorted, failed)) {
+                int first = component.get(0);
+                if (component.size() == 1 && !dependencies.get(first).contains(first)) {
+                    continue;
+                }
+                for (int node : component) {
+                    cyclic[node] = true;
+                }
+                List<DiscoveredExtension> cycle = new ArrayList<>();
+                for (int node : ExtensionManager.findCycle(first, dependencies, cyclic)) {
+                    cycle.add(nodes[node]);
+                }
+                cycles.add(Collections.unmodifiableList(cycle));
+                LOGGER.error("Extensions {} could not be loaded, as they form a dependency cycle: {} -> {}.",
+                        component.stream().map(node -> nodes[node].getName()).collect(Collectors.joining(", ")),
+                        cycle.stream().map(DiscoveredExtension::getName).collect(Collectors.joining(" -> ")),
+                        cycle.get(0).getName());
+            }
+            for (int i = 0; i < count; i++) {
+                if (!failed[i] && !sorted[i]) {
+                    if (!cyclic[i]) {
+                        LOGGER.error("{} could not be loaded, as it depends on: {}.", nodes[i].getName(),
+                                dependencies.get(i).stream().filter(node -> !sorted[node]).map(node -> nodes[node].getName()).distinct().collect(Collectors.joining(", ")));
+                    }
+                    nodes[i].setLoadStatus(DiscoveredExtension.LoadStatus.MISSING_DEPENDENCIES);
+                }
             }
         }
 
-        return sortedList;
+        LOGGER.debug("Sorted {} extensions into {} load levels.", sortedCount, levels.size());
+        return new LoadOrder(Collections.unmodifiableList(levels), Collections.unmodifiableList(cycles));
+    }
+
+    /**
+     * Computes the strongly connected components (Tarjan's algorithm) of the dependency graph of the extensions which
+     * could not be sorted. The components are returned in reverse topological order.
+     *
+     * @param dependencies The dependency graph, by index of the extension
+     * @param sorted Whether an extension was sorted, in which case it is not part of the graph
+     * @param failed Whether an extension has failed to load, in which case it is not part of the graph
+     * @return The strongly connected components
+     */
+    @NotNull
+    private static List<List<Integer>> findStronglyConnectedComponents(@NotNull List<List<Integer>> dependencies, boolean @NotNull[] sorted, boolean @NotNull[] failed) {
+        int count = dependencies.size();
+        int[] index = new int[count];
+        int[] lowLink = new int[count];
+        boolean[] onStack = new boolean[count];
+        Arrays.fill(index, -1);
+        Deque<Integer> stack = new ArrayDeque<>();
+        List<List<Integer>> components = new ArrayList<>();
+        int nextIndex = 0;
+
+        // Iterative variant, as the recursive variant can overflow the stack on long dependency chains
+        int[] edgeCursor = new int[count];
+        Deque<Integer> callStack = new ArrayDeque<>();
+        for (int root = 0; root < count; root++) {
+            if (sorted[root] || failed[root] || index[root] != -1) {
+                continue;
+            }
+            callStack.push(root);
+            index[root] = lowLink[root] = nextIndex++;
+            stack.push(root);
+            onStack[root] = true;
+            while (!callStack.isEmpty()) {
+                int node = callStack.peek();
+                List<Integer> edges = dependencies.get(node);
+                if (edgeCursor[node] < edges.size()) {
+                    int next = edges.get(edgeCursor[node]++);
+                    if (sorted[next] || failed[next]) {
+                        continue;
+                    }
+                    if (index[next] == -1) {
+                        index[next] = lowLink[next] = nextIndex++;
+                        stack.push(next);
+                        onStack[next] = true;
+                        callStack.push(next);
+                    } else if (onStack[next]) {
+                        lowLink[node] = Math.min(lowLink[node], index[next]);
+                    }
+                    continue;
+                }
+                callStack.pop();
+                if (!callStack.isEmpty()) {
+                    int parent = callStack.peek();
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+                if (lowLink[node] == index[node]) {
+                    List<Integer> component = new ArrayList<>();
+                    int member;
+                    do {
+                        member = stack.pop();
+                        onStack[member] = false;
+                        component.add(member);
+                    } while (member != node);
+                    Collections.sort(component);
+                    components.add(component);
+                }
+            }
+        }
+        return components;
     }
 
-    private boolean areAllDependenciesLoaded(List<DiscoveredExtension> dependencies) {
-        return dependencies.isEmpty() || dependencies.stream().allMatch(ext -> extensions.containsKey(ext.getName().toLowerCase()));
+    /**
+     * Finds a shortest dependency cycle through the given extension within it's strongly connected component.
+     *
+     * @param start The index of the extension
+     * @param dependencies The dependency graph, by index of the extension
+     * @param cyclic Whether an extension is part of a cycle. This may include extensions of other strongly connected
+     * components, however no path through them leads back to the given extension.
+     * @return The indices of the extensions forming the cycle, starting with the given extension. Every extension
+     * depends on the next extension, while the last extension depends on the first one.
+     */
+    @NotNull
+    private static List<Integer> findCycle(int start, @NotNull List<List<Integer>> dependencies, boolean @NotNull[] cyclic) {
+        Map<Integer, Integer> predecessors = new HashMap<>();
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int next : dependencies.get(node)) {
+                if (next == start) {
+                    LinkedList<Integer> cycle = new LinkedList<>();
+                    for (int member = node; member != start; member = predecessors.get(member)) {
+                        cycle.addFirst(member);
+                    }
+                    cycle.addFirst(start);
+                    return cycle;
+                }
+                if (cyclic[next] && !predecessors.containsKey(next)) {
+                    predecessors.put(next, node);
+                    queue.add(next);
+                }
+            }
+        }
+        throw new IllegalStateException("No cycle through " + start);
     }
 
     private void loadDependencies(List<DiscoveredExtension> extensions) {
@@ -478,6 +776,7 @@ public class ExtensionManager {
         @SuppressWarnings("resource")
         MinestomRootClassLoader modifiableClassLoader = (MinestomRootClassLoader) cl;
         LOGGER.info("Start loading code modifiers...");
+        boolean addedMixins = false;
         for (DiscoveredExtension extension : extensions) {
             try {
                 for (String codeModifierClass : extension.getCodeModifiers()) {
@@ -486,6 +785,7 @@ public class ExtensionManager {
                 if (!extension.getMixinConfig().isEmpty()) {
                     final String mixinConfigFile = extension.getMixinConfig();
                     Mixins.addConfiguration(mixinConfigFile);
+                    addedMixins = true;
                     LOGGER.info("Found mixin in extension {}: {}", extension.getName(), mixinConfigFile);
                 }
             } catch (Exception e) {
@@ -497,6 +797,13 @@ public class ExtensionManager {
                                 .collect(Collectors.joining(", ")), e);
             }
         }
+        if (addedMixins) {
+            for (ASMTransformer transformer : modifiableClassLoader.getASMTransformers()) {
+                if (transformer instanceof ASMMixinTransformer) {
+                    ((ASMMixinTransformer) transformer).refreshTargets();
+                }
+            }
+        }
         LOGGER.info("Done loading code modifiers.");
     }
 
@@ -583,7 +890,7 @@ public class ExtensionManager {
 
     private boolean loadExtensionList(@NotNull List<DiscoveredExtension> extensionsToLoad) {
         // ensure correct order of dependencies
-        this.generateLoadOrder(extensionsToLoad);
+        extensionsToLoad = this.generateLoadOrder(extensionsToLoad).getLoadOrder();
         this.loadDependencies(extensionsToLoad);
 
         for (DiscoveredExtension extension : extensionsToLoad) {
@@ -3,6 +3,8 @@ package de.geolykt.starloader.mod;
 import java.net.URL;
 import java.util.List;
 
+import org.jetbrains.annotations.Nullable;
+
 /**
  * A prototype of an extension. This class is different to the DiscoveredExtension class
  * as it is only used within the launcher to explain whether a jar should be loaded or not.
@@ -11,6 +13,13 @@ public class ExtensionPrototype {
     public final List<URL> originURLs;
     public boolean enabled;
 
+    /**
+     * The descriptor of the extension, if it was already read while the prototype was created.
+     * Consumed by the {@link ExtensionManager} so that the descriptor does not need to be read again during discovery.
+     */
+    @Nullable
+    DiscoveredExtension descriptor;
+
     public ExtensionPrototype(List<URL> originURLs) {
         this(originURLs, false);
     }
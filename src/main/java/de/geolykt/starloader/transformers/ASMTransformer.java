@@ -1,10 +1,17 @@
 package de.geolykt.starloader.transformers;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.MethodNode;
 
 import de.geolykt.starloader.launcher.ASMMixinTransformer;
 
+import org.jetbrains.annotations.ApiStatus.AvailableSince;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
 import org.objectweb.asm.Type;
 
 /**
@@ -66,6 +73,62 @@ public abstract class ASMTransformer implements Comparable<ASMTransformer> {
         return 0;
     }
 
+    /**
+     * Obtains the classes this transformer could potentially transform. Classloaders may use this
+     * declaration to skip the parsing of classes that are not targeted by any transformer.
+     * The returned declaration must match every class for which {@link #isValidTarget(String)} returns true.
+     *
+     * <p>Unlike {@link #isValidTarget(String)}, this method is not called for every class. Instead, the
+     * returned value may be cached by the classloader until the transformer pool changes.
+     * By default all classes are declared to be potential targets.
+     *
+     * @return The declaration of potential targets
+     * @since 4.0.0
+     */
+    @NotNull
+    @AvailableSince(value = "4.0.0-a20261016")
+    public TransformationTargets getTargets() {
+        return TransformationTargets.all();
+    }
+
+    /**
+     * Obtains the UTF8 constants of which at least one needs to be present in the constant pool of a class
+     * for this transformer to be applicable on the class. Internal names of referenced classes, names
+     * and descriptors of referenced members and string literals are all stored as UTF8 constants.
+     * Classloaders scan the raw constant pool for these constants before the class is parsed, which
+     * allows to skip transformers which only act on classes that reference a specific class or member.
+     *
+     * <p>Like {@link #getTargets()}, the returned value may be cached by the classloader until the transformer pool
+     * changes. By default no constants are required, which means that the constant pool is not considered at all.
+     *
+     * @return The constants required by this transformer, or an empty collection if none are required
+     * @since 4.0.0
+     */
+    @NotNull
+    @Unmodifiable
+    @AvailableSince(value = "4.0.0-a20261016")
+    public Collection<@NotNull String> getRequiredConstants() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Obtains the most invasive kind of modification {@link #accept(ClassNode)} could apply to a class.
+     * Classloaders use this information to avoid expensive steps such as the computation of stack map frames
+     * when writing transformed classes. Declaring a kind that is less invasive than the modifications
+     * actually applied by this transformer results in classes failing verification.
+     *
+     * <p>Like {@link #getTargets()}, the returned value may be cached by the classloader until the transformer pool
+     * changes. By default arbitrary modifications are assumed.
+     *
+     * @return The kind of modifications applied by this transformer
+     * @since 4.0.0
+     */
+    @NotNull
+    @AvailableSince(value = "4.0.0-a20261016")
+    public TransformationKind getTransformationKind() {
+        return TransformationKind.CODE;
+    }
+
     /**
      * Checks whether the given class denoted by the internal name would
      * be a valid potential transformation target.
@@ -92,4 +155,68 @@ public abstract class ASMTransformer implements Comparable<ASMTransformer> {
     public boolean isValid() {
         return true;
     }
+
+    /**
+     * Checks whether this transformer relies on the stack map frames of the original class being present
+     * within the {@link ClassNode} passed to {@link #accept(ClassNode)}.
+     *
+     * <p>Classes modified by a transformer of the {@link TransformationKind#CODE CODE} kind need to have their frames
+     * recomputed anyways. If none of the transformers which are potentially interested in a class rely on the original
+     * frames and any of them may modify code, the classloader skips parsing the frames of the class
+     * altogether. In that case, the {@link FrameNode frame nodes} of all methods are absent.
+     *
+     * <p>Like {@link #getTargets()}, the returned value may be cached by the classloader until the transformer pool
+     * changes. By default transformers are assumed to rely on the original frames.
+     *
+     * @return True if the original frames must be present, false if they may be omitted
+     * @since 4.0.0
+     */
+    @AvailableSince(value = "4.0.0-a20261016")
+    public boolean requiresOriginalFrames() {
+        return true;
+    }
+
+    /**
+     * Checks whether this transformer supports classes whose method bodies are decoded lazily.
+     *
+     * <p>If all tree-based transformers which are potentially interested in a class support lazy method bodies,
+     * the classloader only decodes the body of a method once a method of it's {@link MethodNode#instructions instruction list}
+     * is invoked. Methods whose instructions are never accessed are copied from the original class as-is, which
+     * saves decoding and encoding the code of large classes of which only a few methods are transformed.
+     *
+     * <p>Until the instructions of a method are accessed, the {@link MethodNode#tryCatchBlocks try-catch blocks},
+     * {@link MethodNode#localVariables local variables}, {@link MethodNode#maxStack maximum stack size},
+     * {@link MethodNode#maxLocals maximum amount of locals} and the local variable annotations of the method are absent.
+     * Transformers supporting lazy method bodies must therefore access the instructions of a method before
+     * accessing any of these fields, and must not modify anything but the name and the access flags of
+     * methods whose instructions they do not access.
+     *
+     * <p>Like {@link #getTargets()}, the returned value may be cached by the classloader until the transformer pool
+     * changes. By default lazy method bodies are not supported.
+     *
+     * @return True if lazily decoded method bodies are supported
+     * @since 4.0.0
+     */
+    @AvailableSince(value = "4.0.0-a20261016")
+    public boolean supportsLazyMethodBodies() {
+        return false;
+    }
+
+    /**
+     * Checks whether this transformer is free of side effects, that is whether transforming a class only
+     * modifies the class and has no other observable effect. In particular, side-effect free transformers
+     * must not become {@link #isValid() invalid} by transforming a class and must produce the same result
+     * when they transform the same class twice.
+     *
+     * <p>Classes are only transformed ahead of time (for example while prefetching classes during startup)
+     * if all transformers interested in them are free of side effects, as such transformations may be discarded
+     * and repeated later on. By default transformers are assumed to have side effects.
+     *
+     * @return True if the transformer has no side effects
+     * @since 4.0.0
+     */
+    @AvailableSince(value = "4.0.0-a20261016")
+    public boolean isSideEffectFree() {
+        return false;
+    }
 }
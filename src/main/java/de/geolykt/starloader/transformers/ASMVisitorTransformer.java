@@ -0,0 +1,98 @@
+package de.geolykt.starloader.transformers;
+
+import org.jetbrains.annotations.ApiStatus.AvailableSince;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * An {@link ASMTransformer} which transforms classes in a single streaming pass through a {@link ClassVisitor}
+ * instead of operating on a fully materialized {@link ClassNode}.
+ *
+ * <p>Classloaders chain consecutive visitor-based transformers into a single pass from the class reader
+ * to the class writer. A {@link ClassNode} is only materialized if a tree-based transformer needs it.
+ * When combined with {@link TransformationKind#FLAGS} or {@link TransformationKind#CONSTANTS}, methods that
+ * are not touched by the visitor can be copied as-is, so their code does not need to be parsed at all.
+ *
+ * @since 4.0.0
+ */
+@AvailableSince(value = "4.0.0-a20261016")
+public abstract class ASMVisitorTransformer extends ASMTransformer {
+
+    /**
+     * Copies the contents of a class node into another class node.
+     *
+     * @param source The node to copy from
+     * @param target The node to copy to
+     */
+    private static void copyInto(@NotNull ClassNode source, @NotNull ClassNode target) {
+        target.version = source.version;
+        target.access = source.access;
+        target.name = source.name;
+        target.signature = source.signature;
+        target.superName = source.superName;
+        target.interfaces = source.interfaces;
+        target.sourceFile = source.sourceFile;
+        target.sourceDebug = source.sourceDebug;
+        target.module = source.module;
+        target.outerClass = source.outerClass;
+        target.outerMethod = source.outerMethod;
+        target.outerMethodDesc = source.outerMethodDesc;
+        target.visibleAnnotations = source.visibleAnnotations;
+        target.invisibleAnnotations = source.invisibleAnnotations;
+        target.visibleTypeAnnotations = source.visibleTypeAnnotations;
+        target.invisibleTypeAnnotations = source.invisibleTypeAnnotations;
+        target.attrs = source.attrs;
+        target.innerClasses = source.innerClasses;
+        target.nestHostClass = source.nestHostClass;
+        target.nestMembers = source.nestMembers;
+        target.permittedSubclasses = source.permittedSubclasses;
+        target.recordComponents = source.recordComponents;
+        target.fields = source.fields;
+        target.methods = source.methods;
+    }
+
+    /**
+     * Transforms the provided {@link ClassNode} by passing it through the visitor obtained through
+     * {@link #createVisitor(ClassNode, ClassVisitor)}. This is used by classloaders which do not support
+     * visitor-based transformers, or when the class is already materialized as a tree anyways.
+     *
+     * @param node The node to transform
+     * @return True if the node has been modified.
+     * @since 4.0.0
+     */
+    @Override
+    public boolean accept(@NotNull ClassNode node) {
+        ClassNode transformed = new ClassNode();
+        ClassVisitor visitor = this.createVisitor(node, transformed);
+        if (visitor == null) {
+            return false;
+        }
+        node.accept(visitor);
+        ASMVisitorTransformer.copyInto(transformed, node);
+        return true;
+    }
+
+    /**
+     * Creates the visitor which transforms a class. The visitor must pass all events on to the
+     * given delegate visitor, transforming them in the process.
+     *
+     * <p>The skeleton describes the class as it is passed to the pass this transformer is part of. It contains
+     * the header, the annotations and the fields and methods of the class, but the methods may lack their code.
+     * The skeleton must not be modified. Note that changes applied by transformers running earlier within the same
+     * pass are not reflected by the skeleton, which is why transformers should only rely on the names
+     * and descriptors of the class and it's members.
+     *
+     * <p>When several visitor-based transformers are chained, the visitors are created in reverse
+     * application order, as a visitor needs to know it's delegate.
+     *
+     * @param skeleton A read-only view of the class to transform
+     * @param next The visitor to delegate to
+     * @return The transforming visitor, or null if this transformer will not modify the class. If a visitor is
+     * returned, the class is considered to be modified.
+     * @since 4.0.0
+     */
+    @Nullable
+    public abstract ClassVisitor createVisitor(@NotNull ClassNode skeleton, @NotNull ClassVisitor next);
+}
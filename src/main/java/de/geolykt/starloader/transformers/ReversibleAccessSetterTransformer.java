@@ -1,7 +1,20 @@
 package de.geolykt.starloader.transformers;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.MethodNode;
 import org.slf4j.LoggerFactory;
 
 import de.geolykt.starloader.ras.ReversibleAccessSetterContext;
@@ -11,24 +24,153 @@ import de.geolykt.starloader.ras.ReversibleAccessSetterContext.RASTransformScope
 /**
  * An {@link ASMTransformer} that implements the transformation of class files via reversible access setters (RAS).
  *
+ * <p>As reversible access setters only ever modify access flags, the transformer is implemented as an
+ * {@link ASMVisitorTransformer}: The new access flags are computed on the skeleton of the class and are then
+ * applied while the class is streamed from the reader to the writer, without the code of the class ever being parsed.
+ *
  * @since 4.0.0
  */
-public class ReversibleAccessSetterTransformer extends ASMTransformer {
+public class ReversibleAccessSetterTransformer extends ASMVisitorTransformer {
+
+    /**
+     * A {@link ClassVisitor} that replaces the access flags of a class and it's members according to a precomputed plan.
+     */
+    private static final class AccessPlanVisitor extends ClassVisitor {
+        private final int classAccess;
+        @NotNull
+        private final Map<String, Integer> fieldAccess;
+        @NotNull
+        private final Map<String, Integer> innerClassAccess;
+        @NotNull
+        private final Map<String, Integer> methodAccess;
+
+        private AccessPlanVisitor(@NotNull ClassVisitor next, int classAccess, @NotNull Map<String, Integer> innerClassAccess,
+                @NotNull Map<String, Integer> fieldAccess, @NotNull Map<String, Integer> methodAccess) {
+            super(Opcodes.ASM9, next);
+            this.classAccess = classAccess;
+            this.innerClassAccess = innerClassAccess;
+            this.fieldAccess = fieldAccess;
+            this.methodAccess = methodAccess;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            super.visit(version, this.classAccess, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            return super.visitField(this.fieldAccess.getOrDefault(name + ':' + descriptor, access), name, descriptor, signature, value);
+        }
+
+        @Override
+        public void visitInnerClass(String name, String outerName, String innerName, int access) {
+            super.visitInnerClass(name, outerName, innerName, this.innerClassAccess.getOrDefault(name, access));
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            return super.visitMethod(this.methodAccess.getOrDefault(name + descriptor, access), name, descriptor, signature, exceptions);
+        }
+    }
 
     @NotNull
     private final ReversibleAccessSetterContext mainContext = new ReversibleAccessSetterContext(RASTransformScope.RUNTIME, false);
     @NotNull
     private final ReversibleAccessSetterContext reverseContext = new ReversibleAccessSetterContext(RASTransformScope.BUILDTIME, true);
 
+    /**
+     * Obtains the access flags of the class, it's inner classes, fields and methods, in that order.
+     *
+     * @param node The class
+     * @return The access flags of all elements of the class
+     */
+    private static int @NotNull[] snapshotAccess(@NotNull ClassNode node) {
+        int[] access = new int[1 + node.innerClasses.size() + node.fields.size() + node.methods.size()];
+        int i = 0;
+        access[i++] = node.access;
+        for (InnerClassNode innerClass : node.innerClasses) {
+            access[i++] = innerClass.access;
+        }
+        for (FieldNode field : node.fields) {
+            access[i++] = field.access;
+        }
+        for (MethodNode method : node.methods) {
+            access[i++] = method.access;
+        }
+        return access;
+    }
+
     @Override
     public boolean accept(@NotNull ClassNode node) {
+        int[] accessBefore = ReversibleAccessSetterTransformer.snapshotAccess(node);
         try {
             this.reverseContext.accept(node);
             this.mainContext.accept(node);
         } catch (RASTransformFailure failure) {
             LoggerFactory.getLogger(getClass()).error("Unable to transform class {}", node.name, failure);
         }
-        return true;
+        // Only report a modification if any flags actually changed, so that untouched classes do not need to be written again
+        return !Arrays.equals(accessBefore, ReversibleAccessSetterTransformer.snapshotAccess(node));
+    }
+
+    /**
+     * Creates a copy of the header and members of a class, without copying any code or annotations.
+     *
+     * @param skeleton The class to copy
+     * @return The copy
+     */
+    @NotNull
+    private static ClassNode copySkeleton(@NotNull ClassNode skeleton) {
+        ClassNode copy = new ClassNode();
+        copy.version = skeleton.version;
+        copy.access = skeleton.access;
+        copy.name = skeleton.name;
+        copy.signature = skeleton.signature;
+        copy.superName = skeleton.superName;
+        copy.interfaces = new ArrayList<>(skeleton.interfaces);
+        for (InnerClassNode innerClass : skeleton.innerClasses) {
+            copy.innerClasses.add(new InnerClassNode(innerClass.name, innerClass.outerName, innerClass.innerName, innerClass.access));
+        }
+        for (FieldNode field : skeleton.fields) {
+            copy.fields.add(new FieldNode(field.access, field.name, field.desc, field.signature, field.value));
+        }
+        for (MethodNode method : skeleton.methods) {
+            String[] exceptions = method.exceptions == null ? null : method.exceptions.toArray(new String[0]);
+            copy.methods.add(new MethodNode(method.access, method.name, method.desc, method.signature, exceptions));
+        }
+        return copy;
+    }
+
+    @Override
+    @Nullable
+    public ClassVisitor createVisitor(@NotNull ClassNode skeleton, @NotNull ClassVisitor next) {
+        ClassNode plan = ReversibleAccessSetterTransformer.copySkeleton(skeleton);
+        if (!this.accept(plan)) {
+            return null;
+        }
+        Map<String, Integer> innerClassAccess = new HashMap<>();
+        Map<String, Integer> fieldAccess = new HashMap<>();
+        Map<String, Integer> methodAccess = new HashMap<>();
+        for (int i = 0; i < plan.innerClasses.size(); i++) {
+            InnerClassNode innerClass = plan.innerClasses.get(i);
+            if (innerClass.access != skeleton.innerClasses.get(i).access) {
+                innerClassAccess.put(innerClass.name, innerClass.access);
+            }
+        }
+        for (int i = 0; i < plan.fields.size(); i++) {
+            FieldNode field = plan.fields.get(i);
+            if (field.access != skeleton.fields.get(i).access) {
+                fieldAccess.put(field.name + ':' + field.desc, field.access);
+            }
+        }
+        for (int i = 0; i < plan.methods.size(); i++) {
+            MethodNode method = plan.methods.get(i);
+            if (method.access != skeleton.methods.get(i).access) {
+                methodAccess.put(method.name + method.desc, method.access);
+            }
+        }
+        return new AccessPlanVisitor(next, plan.access, innerClassAccess, fieldAccess, methodAccess);
     }
 
     @NotNull
@@ -46,8 +188,24 @@ public class ReversibleAccessSetterTransformer extends ASMTransformer {
         return this.reverseContext;
     }
 
+    @Override
+    @NotNull
+    public TransformationKind getTransformationKind() {
+        return TransformationKind.FLAGS;
+    }
+
     @Override
     public boolean isValidTarget(@NotNull String internalName) {
         return this.mainContext.isTarget(internalName) || this.reverseContext.isTarget(internalName);
     }
+
+    @Override
+    public boolean requiresOriginalFrames() {
+        return false;
+    }
+
+    @Override
+    public boolean isSideEffectFree() {
+        return true;
+    }
 }
@@ -1,11 +1,14 @@
 package de.geolykt.starloader.transformers;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -242,6 +245,21 @@ public class StarplaneAnnotationsInlineTransformer extends ASMTransformer {
         return transformed;
     }
 
+    @Override
+    @NotNull
+    @Unmodifiable
+    public Collection<@NotNull String> getRequiredConstants() {
+        // Only calls to ReferenceSource.getStringValue() are replaced, so the class needs to reference ReferenceSource
+        return Collections.singleton("de/geolykt/starloader/starplane/annotations/ReferenceSource");
+    }
+
+    @Override
+    @NotNull
+    public TransformationKind getTransformationKind() {
+        // Calls to ReferenceSource.getStringValue() are replaced by string constants, which leaves the stack map intact
+        return TransformationKind.CONSTANTS;
+    }
+
     @Override
     public boolean isValidTarget(@NotNull String internalName) {
         return true;
@@ -251,4 +269,14 @@ public class StarplaneAnnotationsInlineTransformer extends ASMTransformer {
     public int getPriority() {
         return -10_010;
     }
+
+    @Override
+    public boolean requiresOriginalFrames() {
+        return false;
+    }
+
+    @Override
+    public boolean isSideEffectFree() {
+        return true;
+    }
 }
@@ -0,0 +1,38 @@
+package de.geolykt.starloader.transformers;
+
+import org.jetbrains.annotations.ApiStatus.AvailableSince;
+
+/**
+ * The kinds of modifications an {@link ASMTransformer} can apply to a class. Classloaders use this information
+ * to choose the cheapest way of writing transformed classes. Kinds are ordered from the least to the most
+ * invasive kind of modification.
+ *
+ * @since 4.0.0
+ */
+@AvailableSince(value = "4.0.0-a20261016")
+public enum TransformationKind {
+
+    /**
+     * Only the access flags of classes, fields or methods are modified.
+     *
+     * @since 4.0.0
+     */
+    FLAGS,
+
+    /**
+     * Access flags and constants may be modified. Instructions may only be replaced by instructions
+     * that have the same effect on the operand stack and local variables (e.g. a method call returning a string
+     * being replaced by a string constant), so that the stack map frames and the maximum stack size and amount of
+     * local variables of all methods remain valid.
+     *
+     * @since 4.0.0
+     */
+    CONSTANTS,
+
+    /**
+     * Arbitrary modifications. The stack map frames of transformed classes need to be recomputed.
+     *
+     * @since 4.0.0
+     */
+    CODE;
+}
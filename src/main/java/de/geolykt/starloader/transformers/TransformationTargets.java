@@ -0,0 +1,184 @@
+package de.geolykt.starloader.transformers;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jetbrains.annotations.ApiStatus.AvailableSince;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+/**
+ * An immutable declaration of the classes an {@link ASMTransformer} could potentially transform.
+ * Classloaders use this declaration to build an index of transformers so classes that are not targeted
+ * by any transformer do not need to be parsed at all.
+ *
+ * <p>Targets can either be declared as exact internal names (e.g. "com/example/Main"), as prefixes of internal names
+ * (e.g. "com/example/" for all classes in the package "com.example" and it's subpackages) or as
+ * {@link #all() all classes}. The declaration must be a superset of the classes for which
+ * {@link ASMTransformer#isValidTarget(String)} returns true.
+ *
+ * @since 4.0.0
+ */
+@AvailableSince(value = "4.0.0-a20261016")
+public final class TransformationTargets {
+
+    @NotNull
+    private static final TransformationTargets ALL = new TransformationTargets(true, Collections.emptySet(), Collections.emptySet());
+
+    @NotNull
+    private static final TransformationTargets NONE = new TransformationTargets(false, Collections.emptySet(), Collections.emptySet());
+
+    /**
+     * Obtains the declaration that matches all classes. This is the default declaration of transformers.
+     *
+     * @return A declaration matching all classes
+     * @since 4.0.0
+     */
+    @NotNull
+    @Contract(pure = true)
+    public static TransformationTargets all() {
+        return TransformationTargets.ALL;
+    }
+
+    /**
+     * Obtains the declaration that matches no classes at all.
+     *
+     * @return A declaration matching no classes
+     * @since 4.0.0
+     */
+    @NotNull
+    @Contract(pure = true)
+    public static TransformationTargets none() {
+        return TransformationTargets.NONE;
+    }
+
+    /**
+     * Creates a declaration that matches exactly the classes with the given internal names.
+     *
+     * @param internalNames The internal names of the targeted classes
+     * @return A declaration matching the given classes
+     * @since 4.0.0
+     */
+    @NotNull
+    @Contract(pure = true, value = "_ -> new")
+    public static TransformationTargets ofClasses(@NotNull Collection<@NotNull String> internalNames) {
+        return new TransformationTargets(false, copy(internalNames), Collections.emptySet());
+    }
+
+    /**
+     * Creates a declaration that matches all classes whose internal names start with any of the given prefixes.
+     * To match a package and it's subpackages, the prefix should end with a slash.
+     *
+     * @param prefixes The prefixes of the internal names of the targeted classes
+     * @return A declaration matching the given prefixes
+     * @since 4.0.0
+     */
+    @NotNull
+    @Contract(pure = true, value = "_ -> new")
+    public static TransformationTargets ofPrefixes(@NotNull Collection<@NotNull String> prefixes) {
+        return new TransformationTargets(false, Collections.emptySet(), copy(prefixes));
+    }
+
+    @SuppressWarnings("null")
+    @NotNull
+    @Unmodifiable
+    private static Set<@NotNull String> copy(@NotNull Collection<@NotNull String> strings) {
+        return Collections.unmodifiableSet(new HashSet<>(strings));
+    }
+
+    private final boolean all;
+
+    @NotNull
+    @Unmodifiable
+    private final Set<@NotNull String> classes;
+
+    @NotNull
+    @Unmodifiable
+    private final Set<@NotNull String> prefixes;
+
+    private TransformationTargets(boolean all, @NotNull @Unmodifiable Set<@NotNull String> classes, @NotNull @Unmodifiable Set<@NotNull String> prefixes) {
+        this.all = all;
+        this.classes = classes;
+        this.prefixes = prefixes;
+    }
+
+    /**
+     * Obtains the internal names of the classes that are targeted explicitly.
+     *
+     * @return The internal names of the targeted classes
+     * @since 4.0.0
+     */
+    @NotNull
+    @Unmodifiable
+    @Contract(pure = true)
+    public Set<@NotNull String> getClasses() {
+        return this.classes;
+    }
+
+    /**
+     * Obtains the prefixes of the internal names of the targeted classes.
+     *
+     * @return The targeted prefixes
+     * @since 4.0.0
+     */
+    @NotNull
+    @Unmodifiable
+    @Contract(pure = true)
+    public Set<@NotNull String> getPrefixes() {
+        return this.prefixes;
+    }
+
+    /**
+     * Checks whether this declaration matches all classes.
+     *
+     * @return True if all classes are targeted
+     * @since 4.0.0
+     */
+    @Contract(pure = true)
+    public boolean isAll() {
+        return this.all;
+    }
+
+    /**
+     * Checks whether the class denoted by the given internal name is matched by this declaration.
+     *
+     * @param internalName The internal name of the class
+     * @return True if the class is targeted
+     * @since 4.0.0
+     */
+    @Contract(pure = true)
+    public boolean matches(@NotNull String internalName) {
+        if (this.all || this.classes.contains(internalName)) {
+            return true;
+        }
+        for (String prefix : this.prefixes) {
+            if (internalName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates a declaration that matches all classes matched by this declaration or the other declaration.
+     *
+     * @param other The other declaration
+     * @return The union of both declarations
+     * @since 4.0.0
+     */
+    @NotNull
+    @Contract(pure = true)
+    public TransformationTargets or(@NotNull TransformationTargets other) {
+        if (this.all || other.all) {
+            return TransformationTargets.ALL;
+        }
+        Set<@NotNull String> classes = new HashSet<>(this.classes);
+        classes.addAll(other.classes);
+        Set<@NotNull String> prefixes = new HashSet<>(this.prefixes);
+        prefixes.addAll(other.prefixes);
+        return new TransformationTargets(false, copy(classes), copy(prefixes));
+    }
+}
@@ -5,9 +5,18 @@ import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 
+import org.jetbrains.annotations.ApiStatus.ScheduledForRemoval;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+/**
+ * A sorted collection implemented as a linked list.
+ *
+ * @deprecated The collection is not thread-safe when iterated and it's {@link #size()} is incorrect.
+ * Use {@link SortedArrayCollection} instead.
+ */
+@Deprecated
+@ScheduledForRemoval(inVersion = "5.0.0")
 public class OrderedCollection<E extends Comparable<E>> extends AbstractCollection<E> implements CollectionNode<E> {
 
     private static class Subnode<T> implements CollectionNode<T> {
@@ -0,0 +1,160 @@
+package de.geolykt.starloader.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import org.jetbrains.annotations.ApiStatus.AvailableSince;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A thread-safe set of strings which supports checking whether any element of the set is a prefix of a given string
+ * in logarithmic time.
+ *
+ * <p>The set is implemented as a copy-on-write sorted array. Modifications replace the array while holding
+ * a lock and are thus expensive, but lookups never block and operate on an immutable snapshot. This makes the set
+ * suitable for lookups on hot paths, such as class loading, where the set is seldom modified after startup.
+ *
+ * @since 4.0.0
+ */
+@AvailableSince(value = "4.0.0-a20261016")
+public final class PrefixSet extends AbstractSet<String> {
+
+    private static final class Snapshot {
+        /**
+         * All elements of the set in ascending order.
+         */
+        @NotNull
+        private final String @NotNull[] elements;
+
+        /**
+         * The elements of the set in ascending order, excluding all elements that have another element as their prefix.
+         * As no element of this array is a prefix of another element, the only candidate prefix of a string is
+         * the largest element that is smaller than or equal to the string.
+         */
+        @NotNull
+        private final String @NotNull[] prefixes;
+
+        private Snapshot(@NotNull String @NotNull[] elements) {
+            this.elements = elements;
+            String[] prefixes = new String[elements.length];
+            int count = 0;
+            for (String element : elements) {
+                // Due to the sort order, a prefix of an element is always located before the element
+                if (count == 0 || !element.startsWith(prefixes[count - 1])) {
+                    prefixes[count++] = element;
+                }
+            }
+            this.prefixes = Arrays.copyOf(prefixes, count);
+        }
+    }
+
+    @NotNull
+    private static final Snapshot EMPTY = new Snapshot(new @NotNull String[0]);
+
+    @NotNull
+    private volatile Snapshot snapshot = PrefixSet.EMPTY;
+
+    @Override
+    public synchronized boolean add(String e) {
+        Objects.requireNonNull(e, "Element may not be null");
+        String[] elements = this.snapshot.elements;
+        int index = Arrays.binarySearch(elements, e);
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        String[] copy = new String[elements.length + 1];
+        System.arraycopy(elements, 0, copy, 0, index);
+        copy[index] = e;
+        System.arraycopy(elements, index, copy, index + 1, elements.length - index);
+        this.snapshot = new Snapshot(copy);
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.snapshot = PrefixSet.EMPTY;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof String && Arrays.binarySearch(this.snapshot.elements, o) >= 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        String[] elements = this.snapshot.elements;
+        return new Iterator<String>() {
+            private int cursor;
+            private int lastReturned = -1;
+
+            @Override
+            public boolean hasNext() {
+                return this.cursor < elements.length;
+            }
+
+            @Override
+            public String next() {
+                if (this.cursor >= elements.length) {
+                    throw new NoSuchElementException();
+                }
+                this.lastReturned = this.cursor;
+                return elements[this.cursor++];
+            }
+
+            @Override
+            public void remove() {
+                if (this.lastReturned == -1) {
+                    throw new IllegalStateException();
+                }
+                PrefixSet.this.remove(elements[this.lastReturned]);
+                this.lastReturned = -1;
+            }
+        };
+    }
+
+    /**
+     * Checks whether any element of this set is a prefix of the given string, that is whether
+     * there is an element for which {@link String#startsWith(String)} returns true. This operation does not block.
+     *
+     * @param string The string to check
+     * @return True if an element of this set is a prefix of the string
+     * @since 4.0.0
+     */
+    @Contract(pure = true)
+    public boolean matchesPrefixOf(@NotNull String string) {
+        String[] prefixes = this.snapshot.prefixes;
+        int index = Arrays.binarySearch(prefixes, string);
+        if (index >= 0) {
+            return true;
+        }
+        index = -index - 2; // The index of the largest element smaller than the string
+        return index >= 0 && string.startsWith(prefixes[index]);
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        String[] elements = this.snapshot.elements;
+        int index = Arrays.binarySearch(elements, o);
+        if (index < 0) {
+            return false;
+        }
+        String[] copy = new String[elements.length - 1];
+        System.arraycopy(elements, 0, copy, 0, index);
+        System.arraycopy(elements, index + 1, copy, index, elements.length - index - 1);
+        this.snapshot = new Snapshot(copy);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return this.snapshot.elements.length;
+    }
+}
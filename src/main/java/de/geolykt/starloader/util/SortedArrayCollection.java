@@ -0,0 +1,183 @@
+package de.geolykt.starloader.util;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import org.jetbrains.annotations.ApiStatus.AvailableSince;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A thread-safe collection which keeps it's elements sorted according to their natural order.
+ * Elements which compare equal are kept in insertion order.
+ *
+ * <p>The collection is implemented as a copy-on-write sorted array. Modifications replace the array while holding
+ * a lock and are thus expensive, but reads never block and operate on an immutable snapshot, which
+ * can be obtained directly through {@link #getSnapshot()}. This makes the collection suitable for hot paths where
+ * the collection is iterated frequently but seldom modified, such as the transformer pool of a classloader.
+ *
+ * @param <E> The type of the elements
+ * @since 4.0.0
+ */
+@AvailableSince(value = "4.0.0-a20261016")
+public final class SortedArrayCollection<E extends Comparable<? super E>> extends AbstractCollection<E> {
+
+    @NotNull
+    private final E @NotNull[] empty;
+
+    @NotNull
+    private volatile E @NotNull[] snapshot;
+
+    /**
+     * Creates an empty collection.
+     *
+     * @param empty An empty array of the element type, used as the runtime type of the snapshots
+     * @since 4.0.0
+     */
+    public SortedArrayCollection(@NotNull E @NotNull[] empty) {
+        if (empty.length != 0) {
+            throw new IllegalArgumentException("The array must be empty");
+        }
+        this.empty = empty;
+        this.snapshot = empty;
+    }
+
+    @Override
+    public synchronized boolean add(E e) {
+        Objects.requireNonNull(e, "Element may not be null");
+        E[] elements = this.snapshot;
+        // Insert after all elements that do not compare greater, so that equal elements retain insertion order
+        int low = 0;
+        int high = elements.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (elements[mid].compareTo(e) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        E[] copy = Arrays.copyOf(elements, elements.length + 1);
+        System.arraycopy(elements, low, copy, low + 1, elements.length - low);
+        copy[low] = e;
+        this.snapshot = copy;
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.snapshot = this.empty;
+    }
+
+    /**
+     * Obtains the current contents of the collection in ascending order. The returned array is never modified
+     * by the collection, as modifications replace the array instead. This operation does not block.
+     *
+     * @return The immutable snapshot of the collection. Do not modify the returned array.
+     * @since 4.0.0
+     */
+    @NotNull
+    @Contract(pure = true)
+    public E @NotNull[] getSnapshot() {
+        return this.snapshot;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.snapshot.length == 0;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        E[] elements = this.snapshot;
+        return new Iterator<E>() {
+            private int cursor;
+            private int lastReturned = -1;
+
+            @Override
+            public boolean hasNext() {
+                return this.cursor < elements.length;
+            }
+
+            @Override
+            public E next() {
+                if (this.cursor >= elements.length) {
+                    throw new NoSuchElementException();
+                }
+                this.lastReturned = this.cursor;
+                return elements[this.cursor++];
+            }
+
+            @Override
+            public void remove() {
+                if (this.lastReturned == -1) {
+                    throw new IllegalStateException();
+                }
+                SortedArrayCollection.this.removeAll(Collections.singleton(elements[this.lastReturned]));
+                this.lastReturned = -1;
+            }
+        };
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        E[] elements = this.snapshot;
+        for (int i = 0; i < elements.length; i++) {
+            if (elements[i].equals(o)) {
+                E[] copy = Arrays.copyOf(elements, elements.length - 1);
+                System.arraycopy(elements, i + 1, copy, i, elements.length - i - 1);
+                this.snapshot = copy;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all elements that are contained in the given collection. Unlike repeated calls to
+     * {@link #remove(Object)}, the backing array is only copied once.
+     *
+     * <p>Note that this method compares elements by identity, not by equality.
+     *
+     * @param c The elements to remove
+     * @return True if any element was removed
+     */
+    @Override
+    public synchronized boolean removeAll(Collection<?> c) {
+        if (c.isEmpty()) {
+            return false;
+        }
+        Set<Object> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(c);
+        E[] elements = this.snapshot;
+        E[] copy = Arrays.copyOf(elements, elements.length);
+        int size = 0;
+        for (E element : elements) {
+            if (!removed.contains(element)) {
+                copy[size++] = element;
+            }
+        }
+        if (size == elements.length) {
+            return false;
+        }
+        this.snapshot = size == 0 ? this.empty : Arrays.copyOf(copy, size);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return this.snapshot.length;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return this.snapshot.clone();
+    }
+}
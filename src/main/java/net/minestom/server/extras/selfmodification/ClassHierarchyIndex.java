@@ -0,0 +1,149 @@
+package net.minestom.server.extras.selfmodification;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A lazily populated index of the supertypes of classes, obtained by reading the headers of class files
+ * instead of loading the classes. This index is used to compute the common super class of two types
+ * while computing stack map frames, which avoids loading (and thus potentially transforming) classes
+ * while a class is being transformed. Classes which were already loaded are consulted first, which also
+ * covers classes that were defined without a backing class file, for example through
+ * {@link MinestomRootClassLoader#transformAndDefineClass(String, de.geolykt.starloader.transformers.RawClassData)}.
+ *
+ * <p>The index is based on the untransformed bytecode of classes. Transformers may add interfaces
+ * to classes, which the index does not know about. In the worst case this means that
+ * "java/lang/Object" is reported as the common super class instead of an interface, which
+ * the verifier accepts as interface types are treated like "java/lang/Object" by the verifier.
+ */
+final class ClassHierarchyIndex {
+
+    private static final class Header {
+        private final boolean isInterface;
+        @Nullable
+        private final String superName;
+        @NotNull
+        private final String @NotNull[] interfaces;
+
+        private Header(boolean isInterface, @Nullable String superName, @NotNull String @NotNull[] interfaces) {
+            this.isInterface = isInterface;
+            this.superName = superName;
+            this.interfaces = interfaces;
+        }
+    }
+
+    /**
+     * Thrown when the header of a class cannot be read, in which case the common super class
+     * cannot be determined by the index.
+     */
+    @SuppressWarnings("serial")
+    private static final class MissingHeaderException extends Exception {
+        private MissingHeaderException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final MissingHeaderException MISSING_HEADER = new MissingHeaderException();
+
+    @NotNull
+    private final HierarchyClassLoader loader;
+
+    @NotNull
+    private final ConcurrentHashMap<String, Header> headers = new ConcurrentHashMap<>();
+
+    ClassHierarchyIndex(@NotNull HierarchyClassLoader loader) {
+        this.loader = loader;
+    }
+
+    @NotNull
+    private Header getHeader(@NotNull String internalName) throws MissingHeaderException {
+        Header header = this.headers.get(internalName);
+        if (header != null) {
+            return header;
+        }
+        Class<?> loadedClass = this.loader.findLoadedClassWithChildren(internalName.replace('/', '.'));
+        if (loadedClass != null) {
+            // The supertypes of a loaded class are loaded as well, so this does not cause any classes to be loaded
+            Class<?> superClass = loadedClass.getSuperclass();
+            Class<?>[] interfaceClasses = loadedClass.getInterfaces();
+            String[] interfaces = new String[interfaceClasses.length];
+            for (int i = 0; i < interfaces.length; i++) {
+                interfaces[i] = interfaceClasses[i].getName().replace('.', '/');
+            }
+            header = new Header(loadedClass.isInterface(), superClass == null ? null : superClass.getName().replace('.', '/'), interfaces);
+        } else {
+            try {
+                URL url = this.loader.getResourceWithChildren(internalName + ".class");
+                if (url == null) {
+                    throw ClassHierarchyIndex.MISSING_HEADER;
+                }
+                ClassReader reader = new ClassReader(HierarchyClassLoader.readResource(url));
+                header = new Header((reader.getAccess() & Opcodes.ACC_INTERFACE) != 0, reader.getSuperName(), reader.getInterfaces());
+            } catch (IOException | RuntimeException e) {
+                throw ClassHierarchyIndex.MISSING_HEADER;
+            }
+        }
+        // Only successful lookups are cached as classes may become available later on
+        this.headers.putIfAbsent(internalName, header);
+        return header;
+    }
+
+    /**
+     * Checks whether a value of the type "from" can be assigned to a variable of the type "to".
+     */
+    private boolean isAssignable(@NotNull String to, @NotNull String from) throws MissingHeaderException {
+        if (to.equals(from)) {
+            return true;
+        }
+        Header header = getHeader(from);
+        if (header.superName != null && isAssignable(to, header.superName)) {
+            return true;
+        }
+        for (String itf : header.interfaces) {
+            if (isAssignable(to, itf)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the common super class of two classes, in the same way {@link ClassWriter#getCommonSuperClass(String, String)}
+     * does, but without loading any classes.
+     *
+     * @param type1 The internal name of the first class
+     * @param type2 The internal name of the second class
+     * @return The internal name of the common super class, or null if the header of any involved class could not be read
+     */
+    @Nullable
+    String getCommonSuperClass(@NotNull String type1, @NotNull String type2) {
+        try {
+            if (isAssignable(type1, type2)) {
+                return type1;
+            }
+            if (isAssignable(type2, type1)) {
+                return type2;
+            }
+            if (getHeader(type1).isInterface || getHeader(type2).isInterface) {
+                return "java/lang/Object";
+            }
+            String superType = type1;
+            do {
+                superType = getHeader(superType).superName;
+                if (superType == null) {
+                    return "java/lang/Object";
+                }
+            } while (!isAssignable(superType, type2));
+            return superType;
+        } catch (MissingHeaderException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package net.minestom.server.extras.selfmodification;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Profile-guided prefetching of classes defined by the {@link MinestomRootClassLoader}.
+ *
+ * <p>During a run the names of all classes defined by the root classloader are recorded in the order
+ * they were defined in and are written to a profile file once the JVM shuts down. On the next launch, the bytecode
+ * of these classes is read from the classpath on a pool of worker threads while the launcher is still
+ * busy bootstrapping Mixin and extensions. Once all transformers are registered the prefetched classes are
+ * transformed on the same pool, so that by the time a class is actually loaded its transformed bytecode is ready.
+ * Classes are only transformed ahead of time if all transformers interested in them are
+ * {@link de.geolykt.starloader.transformers.ASMTransformer#isSideEffectFree() free of side effects}.
+ *
+ * <p>Startup is considered over once as many classes were defined as were recorded within the profile,
+ * at which point all prefetched classes that were not loaded are discarded.
+ *
+ * <p>Prefetching is disabled by default and can be enabled by setting the "classloader.prefetch" system property
+ * to true. The location of the profile can be changed through the "classloader.prefetch.profile" system property.
+ */
+final class ClassPrefetcher {
+
+    static final class Entry {
+        @Nullable
+        final URL source;
+
+        /**
+         * The memory-mapped jar the class was read from, or null if the class was read through the regular resource lookup.
+         */
+        @Nullable
+        final MappedJarFile jar;
+
+        final byte @NotNull[] bytes;
+
+        /**
+         * The transformed bytecode of the class, or null if the class was not yet transformed.
+         * Guarded by the transformation lock of the class.
+         */
+        byte @Nullable[] transformedBytes;
+
+        /**
+         * The transformation generation of the classloader at the time {@link #transformedBytes} was computed.
+         */
+        int generation;
+
+        /**
+         * Whether the entry was handed out to the classloader, in which case it must no longer be transformed.
+         * Guarded by the transformation lock of the class.
+         */
+        boolean claimed;
+
+        Entry(@Nullable URL source, @Nullable MappedJarFile jar, byte @NotNull[] bytes) {
+            this.source = source;
+            this.jar = jar;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassPrefetcher.class);
+
+    /**
+     * The maximum amount of classes recorded within a profile.
+     */
+    private static final int MAX_PROFILE_SIZE = 1 << 16;
+
+    /**
+     * The amount of classes read by a single task.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    @Nullable
+    static ClassPrefetcher createDefault(@NotNull MinestomRootClassLoader loader) {
+        if (!Boolean.parseBoolean(System.getProperty("classloader.prefetch", "false"))) {
+            return null;
+        }
+        String profile = System.getProperty("classloader.prefetch.profile");
+        Path path;
+        if (profile == null) {
+            path = new File(de.geolykt.starloader.launcher.Utils.getApplicationFolder(), "classloading.profile").toPath();
+        } else {
+            path = Paths.get(profile);
+        }
+        if (path == null) {
+            throw new AssertionError();
+        }
+        return new ClassPrefetcher(loader, path);
+    }
+
+    @NotNull
+    private final MinestomRootClassLoader loader;
+
+    @NotNull
+    private final Path profileFile;
+
+    @NotNull
+    private final Queue<String> recordedClasses = new ConcurrentLinkedQueue<>();
+
+    @NotNull
+    private final AtomicInteger recordedCount = new AtomicInteger();
+
+    @NotNull
+    private final ConcurrentHashMap<String, Entry> prefetched = new ConcurrentHashMap<>();
+
+    /**
+     * The amount of classes recorded within the profile of the previous run, or {@link Integer#MAX_VALUE}
+     * if prefetching was not started yet.
+     */
+    private volatile int expectedCount = Integer.MAX_VALUE;
+
+    /**
+     * Whether startup is over, in which case no further classes are prefetched.
+     */
+    private volatile boolean finished;
+
+    @Nullable
+    private ForkJoinPool pool;
+
+    @NotNull
+    private List<String> profile = Collections.emptyList();
+
+    ClassPrefetcher(@NotNull MinestomRootClassLoader loader, @NotNull Path profileFile) {
+        this.loader = loader;
+        this.profileFile = profileFile;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::writeProfile, "Starloader class profile writer"));
+    }
+
+    /**
+     * Records that a class has been defined by the root classloader.
+     *
+     * @param name The binary name of the class
+     */
+    void record(@NotNull String name) {
+        int count = this.recordedCount.incrementAndGet();
+        if (count <= MAX_PROFILE_SIZE) {
+            this.recordedClasses.add(name);
+        }
+        if (count >= this.expectedCount && !this.finished) {
+            finish();
+        }
+    }
+
+    /**
+     * Discards all prefetched classes that were not loaded during startup, as they are unlikely to be loaded soon.
+     */
+    private void finish() {
+        this.finished = true;
+        int discarded = this.prefetched.size();
+        this.prefetched.clear();
+        LOGGER.debug("Startup is over, discarding {} prefetched classes", discarded);
+    }
+
+    private void writeProfile() {
+        if (this.recordedClasses.isEmpty()) {
+            return;
+        }
+        try {
+            Path parent = this.profileFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tempFile = Files.createTempFile(parent, "classloading", ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                for (String name : this.recordedClasses) {
+                    writer.write(name);
+                    writer.write('\n');
+                }
+            }
+            try {
+                Files.move(tempFile, this.profileFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, this.profileFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write class loading profile to {}", this.profileFile, e);
+        }
+    }
+
+    @NotNull
+    private List<String> readProfile() {
+        List<String> names = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(this.profileFile, StandardCharsets.UTF_8)) {
+            for (String ln = reader.readLine(); ln != null && names.size() < MAX_PROFILE_SIZE; ln = reader.readLine()) {
+                if (!ln.isEmpty()) {
+                    names.add(ln);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return Collections.emptyList();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read class loading profile from {}", this.profileFile, e);
+            return Collections.emptyList();
+        }
+        return names;
+    }
+
+    @NotNull
+    private ForkJoinPool newPool() {
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Starloader class prefetcher #" + thread.getPoolIndex());
+            thread.setContextClassLoader(this.loader);
+            thread.setDaemon(true);
+            return thread;
+        }, null, true);
+    }
+
+    /**
+     * Starts reading the bytecode of the classes recorded within the profile of the previous run in the background.
+     * Should be called once all URLs have been added to the root classloader.
+     */
+    synchronized void start() {
+        if (this.pool != null) {
+            return;
+        }
+        List<String> names = readProfile();
+        ForkJoinPool pool = newPool();
+        this.pool = pool;
+        this.profile = names;
+        this.expectedCount = names.size();
+        LOGGER.debug("Prefetching {} classes", names.size());
+        for (int i = 0; i < names.size(); i += BATCH_SIZE) {
+            List<String> batch = names.subList(i, Math.min(names.size(), i + BATCH_SIZE));
+            pool.execute(() -> {
+                for (String name : batch) {
+                    fetch(name);
+                }
+            });
+        }
+    }
+
+    private void fetch(@NotNull String name) {
+        if (this.finished || this.loader.findLoadedClass0(name) != null) {
+            return;
+        }
+        String path = name.replace('.', '/') + ".class";
+        try {
+            // Classes are read in the same way they are read by the classloader, so that they are defined from the same source
+            Entry entry;
+            MappedClassPath classPath = this.loader.getClassPath();
+            MappedJarFile jar = classPath.locate(path);
+            if (jar != null) {
+                ByteBuffer bytecode = jar.getEntry(path);
+                if (bytecode == null) {
+                    return;
+                }
+                entry = new Entry(null, jar, MappedJarFile.toByteArray(bytecode));
+            } else if (classPath.isComplete()) {
+                return;
+            } else {
+                URL url = this.loader.findResource(path);
+                if (url == null) {
+                    return;
+                }
+                entry = new Entry(url, null, HierarchyClassLoader.readResource(url));
+            }
+            this.prefetched.putIfAbsent(name, entry);
+            if (this.finished) {
+                // Startup ended while the class was read
+                this.prefetched.remove(name);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Unable to prefetch class {}", name, e);
+        }
+    }
+
+    /**
+     * Transforms the prefetched classes in the background. Should be called once all transformers are registered.
+     */
+    synchronized void pretransform() {
+        ForkJoinPool pool = this.pool;
+        if (pool == null) {
+            return;
+        }
+        // As the pool operates in FIFO mode, these tasks generally run after the read tasks.
+        // Classes which were not yet read once a task gets to them are transformed once they are loaded.
+        List<String> names = this.profile;
+        for (int i = 0; i < names.size(); i += BATCH_SIZE) {
+            List<String> batch = names.subList(i, Math.min(names.size(), i + BATCH_SIZE));
+            pool.execute(() -> {
+                for (String name : batch) {
+                    Entry entry = this.prefetched.get(name);
+                    if (entry != null) {
+                        this.loader.pretransform(name, entry);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        this.pool = null;
+        this.profile = Collections.emptyList();
+    }
+
+    /**
+     * Checks whether the bytecode of a class was prefetched and not yet taken by the classloader.
+     *
+     * @param name The binary name of the class
+     * @return True if {@link #take(String)} would return an entry
+     */
+    boolean isPrefetched(@NotNull String name) {
+        return this.prefetched.containsKey(name);
+    }
+
+    /**
+     * Removes the prefetched entry of a class, if one exists.
+     *
+     * @param name The binary name of the class
+     * @return The prefetched entry, or null if the class was not prefetched
+     */
+    @Nullable
+    Entry take(@NotNull String name) {
+        return this.prefetched.remove(name);
+    }
+}
@@ -0,0 +1,77 @@
+package net.minestom.server.extras.selfmodification;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Utility for checking whether the constant pool of a class contains given UTF8 constants without parsing the class.
+ */
+final class ConstantPoolScanner {
+
+    private static final int CONSTANT_UTF8 = 1;
+
+    private ConstantPoolScanner() {
+        throw new UnsupportedOperationException("Static utility class");
+    }
+
+    /**
+     * Encodes strings in the modified UTF-8 format used by the constant pool of class files.
+     *
+     * @param strings The strings to encode
+     * @return The encoded strings, without the length prefix
+     */
+    static byte @NotNull[] @NotNull[] encode(@NotNull Collection<@NotNull String> strings) {
+        byte[][] encoded = new byte[strings.size()][];
+        int i = 0;
+        for (String string : strings) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(string.length() + 2);
+            try (DataOutputStream out = new DataOutputStream(baos)) {
+                out.writeUTF(string);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to encode constant " + string, e);
+            }
+            byte[] bytes = baos.toByteArray();
+            encoded[i++] = Arrays.copyOfRange(bytes, 2, bytes.length);
+        }
+        return encoded;
+    }
+
+    /**
+     * Checks whether the constant pool of a class contains any of the given UTF8 constants.
+     *
+     * @param reader The reader of the class
+     * @param bytecode The bytecode of the class, which the reader has been created from
+     * @param constants The constants, as encoded by {@link #encode(Collection)}
+     * @return True if the constant pool contains at least one of the constants
+     */
+    static boolean containsAny(@NotNull ClassReader reader, byte @NotNull[] bytecode, byte @NotNull[] @NotNull[] constants) {
+        int itemCount = reader.getItemCount();
+        for (int i = 1; i < itemCount; i++) {
+            int offset = reader.getItem(i); // Offset of the item, plus one (the tag is located at offset - 1)
+            if (offset == 0 || bytecode[offset - 1] != ConstantPoolScanner.CONSTANT_UTF8) {
+                continue;
+            }
+            int length = reader.readUnsignedShort(offset);
+            nextConstant:
+            for (byte[] constant : constants) {
+                if (constant.length != length) {
+                    continue;
+                }
+                for (int j = 0; j < length; j++) {
+                    if (bytecode[offset + 2 + j] != constant[j]) {
+                        continue nextConstant;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+}
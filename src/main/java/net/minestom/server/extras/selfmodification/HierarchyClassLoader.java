@@ -1,18 +1,50 @@
 package net.minestom.server.extras.selfmodification;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.util.LinkedList;
+import java.net.URLConnection;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import de.geolykt.starloader.util.JavaInterop;
 
 /**
  * Classloader part of a hierarchy of classloader.
  */
 public abstract class HierarchyClassLoader extends JavaInteropURLClassloader {
-    protected final List<MinestomExtensionClassLoader> children = new LinkedList<>();
-    protected final List<HierarchyClassLoader> parents = new LinkedList<>();
+    /**
+     * Counter that is incremented every time the URLs or children of any classloader within the hierarchy change.
+     */
+    private static final AtomicInteger HIERARCHY_REVISION = new AtomicInteger();
+
+    /**
+     * Routing table that maps the name of packages to the extension classloaders containing classes within the package.
+     */
+    private static final ConcurrentHashMap<String, List<MinestomExtensionClassLoader>> PACKAGE_ROUTES = new ConcurrentHashMap<>();
+
+    /**
+     * Extension classloaders whose URLs could not be indexed. These loaders need to be consulted for every package.
+     */
+    private static final List<MinestomExtensionClassLoader> UNINDEXED_LOADERS = new CopyOnWriteArrayList<>();
+
+    // Copy-on-write lists are used as the children are iterated by concurrent class loading operations
+    // while the hierarchy itself rarely changes.
+    protected final List<MinestomExtensionClassLoader> children = new CopyOnWriteArrayList<>();
+    protected final List<HierarchyClassLoader> parents = new CopyOnWriteArrayList<>();
+
+    /**
+     * Names of classes that this classloader was recently unable to load.
+     */
+    @NotNull
+    final NegativeLookupCache missingClasses = new NegativeLookupCache();
 
     public HierarchyClassLoader(String name, URL[] urls, ClassLoader parent) {
         super(name, urls, parent);
@@ -23,6 +55,157 @@ public abstract class HierarchyClassLoader extends JavaInteropURLClassloader {
             this.children.add(loader);
             loader.parents.add(this);
         }
+        HierarchyClassLoader.HIERARCHY_REVISION.incrementAndGet();
+    }
+
+    @Override
+    protected void addURL(URL url) {
+        super.addURL(url);
+        HierarchyClassLoader.HIERARCHY_REVISION.incrementAndGet();
+    }
+
+    /**
+     * Obtains the current revision of the classloader hierarchy. The revision changes whenever
+     * a child is added or removed or whenever an URL is added to any classloader within the hierarchy.
+     *
+     * @return The current revision of the hierarchy
+     */
+    static int getHierarchyRevision() {
+        return HierarchyClassLoader.HIERARCHY_REVISION.get();
+    }
+
+    @NotNull
+    static String getPackageName(@NotNull String className) {
+        int lastDot = className.lastIndexOf('.');
+        return lastDot == -1 ? "" : className.substring(0, lastDot);
+    }
+
+    static void addRoute(@NotNull String packageName, @NotNull MinestomExtensionClassLoader loader) {
+        List<MinestomExtensionClassLoader> loaders = HierarchyClassLoader.PACKAGE_ROUTES.computeIfAbsent(packageName, key -> new CopyOnWriteArrayList<>());
+        if (!loaders.contains(loader)) {
+            loaders.add(loader);
+        }
+    }
+
+    static void addUnindexedLoader(@NotNull MinestomExtensionClassLoader loader) {
+        HierarchyClassLoader.UNINDEXED_LOADERS.add(loader);
+    }
+
+    static void removeRoutes(@NotNull MinestomExtensionClassLoader loader) {
+        HierarchyClassLoader.UNINDEXED_LOADERS.remove(loader);
+        HierarchyClassLoader.PACKAGE_ROUTES.values().forEach(loaders -> loaders.remove(loader));
+    }
+
+    /**
+     * Checks whether this classloader is a (direct or indirect) child of the given classloader.
+     *
+     * @param ancestor The potential ancestor
+     * @return True if this classloader is a descendant of the ancestor
+     */
+    boolean isDescendantOf(@NotNull HierarchyClassLoader ancestor) {
+        for (HierarchyClassLoader parent : this.parents) {
+            if (parent == ancestor || parent.isDescendantOf(ancestor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Attempts to load a class from the descendants of this classloader. Only the descendants which contain
+     * the package of the class according to the package routing table (or which could not be indexed) are consulted,
+     * which means that missing classes are usually rejected without consulting any classloader.
+     *
+     * @param name The binary name of the class
+     * @param resolve Whether to resolve the class
+     * @param failure The exception to throw if no descendant can load the class, or null to create a new exception
+     * @return The loaded class
+     * @throws ClassNotFoundException If no descendant is able to load the class
+     */
+    @NotNull
+    protected final Class<?> loadClassFromDescendants(@NotNull String name, boolean resolve, @Nullable ClassNotFoundException failure) throws ClassNotFoundException {
+        List<MinestomExtensionClassLoader> routed = HierarchyClassLoader.PACKAGE_ROUTES.getOrDefault(getPackageName(name), Collections.emptyList());
+        for (List<MinestomExtensionClassLoader> candidates : Arrays.asList(routed, HierarchyClassLoader.UNINDEXED_LOADERS)) {
+            for (MinestomExtensionClassLoader candidate : candidates) {
+                if (candidate == this || !candidate.isDescendantOf(this)) {
+                    continue;
+                }
+                try {
+                    return candidate.loadClassInSelf(name, resolve);
+                } catch (ClassNotFoundException e) {
+                    if (failure == null) {
+                        failure = new ClassNotFoundException("Could not find class " + name);
+                    }
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure == null) {
+            failure = new ClassNotFoundException("Could not find class " + name);
+        }
+        throw failure;
+    }
+
+    /**
+     * Reads the contents of a resource. The size of the resource is obtained from the {@link URLConnection} beforehand,
+     * which for jar entries is the size of the entry. This allows the contents to be read into an array
+     * that is allocated only once.
+     *
+     * @param url The URL of the resource
+     * @return The contents of the resource
+     * @throws IOException If the resource could not be read
+     * @see JavaInterop#readAllBytes(InputStream, int)
+     */
+    static byte @NotNull[] readResource(@NotNull URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        try (InputStream in = connection.getInputStream()) {
+            return JavaInterop.readAllBytes(in, connection.getContentLength());
+        }
+    }
+
+    /**
+     * Finds the resource with the given name within this classloader (including it's parents) or it's children.
+     *
+     * @param name The name of the resource
+     * @return The URL of the resource, or null if not found
+     */
+    @Nullable
+    URL getResourceWithChildren(@NotNull String name) {
+        URL url = getResource(name);
+        if (url != null) {
+            return url;
+        }
+
+        for (MinestomExtensionClassLoader child : children) {
+            URL childURL = child.getResourceWithChildren(name);
+            if (childURL != null) {
+                return childURL;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds a class with the given name that was already loaded by this classloader or it's children.
+     * This never loads any class.
+     *
+     * @param name The binary name of the class
+     * @return The loaded class, or null if no such class was loaded yet
+     */
+    @Nullable
+    Class<?> findLoadedClassWithChildren(@NotNull String name) {
+        Class<?> loadedClass = findLoadedClass(name);
+        if (loadedClass != null) {
+            return loadedClass;
+        }
+
+        for (MinestomExtensionClassLoader child : children) {
+            Class<?> childClass = child.findLoadedClassWithChildren(name);
+            if (childClass != null) {
+                return childClass;
+            }
+        }
+        return null;
     }
 
     public InputStream getResourceAsStreamWithChildren(String name) {
@@ -45,6 +228,7 @@ public abstract class HierarchyClassLoader extends JavaInteropURLClassloader {
             this.children.remove(child);
             this.children.forEach(c -> c.removeChildInHierarchy(child));
         }
+        HierarchyClassLoader.HIERARCHY_REVISION.incrementAndGet();
     }
 
     @Override
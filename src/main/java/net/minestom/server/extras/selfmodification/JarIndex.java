@@ -0,0 +1,240 @@
+package net.minestom.server.extras.selfmodification;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The result of scanning the central directory of a jar: The offsets of the central directory records of
+ * all entries that can be read by a {@link MappedJarFile}, the hashes of their names and the packages of the classes
+ * contained by the jar. The index is immutable and can be {@link JarIndexCache persisted}, so that the central
+ * directory does not need to be scanned again as long as the jar remains unchanged.
+ *
+ * <p>Names and sizes of the entries are not stored within the index, as they are read from the central directory
+ * record at the stored offset when needed.
+ */
+final class JarIndex {
+
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    static final int CENTRAL_HEADER_SIZE = 46;
+    static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    static final int LOCAL_HEADER_SIZE = 30;
+
+    static final int METHOD_STORED = 0;
+    static final int METHOD_DEFLATED = 8;
+
+    /**
+     * Set if the jar contains versioned entries below "META-INF/versions/".
+     */
+    static final int FLAG_MULTI_RELEASE = 1;
+
+    /**
+     * Set if all entries of the jar are included in {@link #centralOffsets}, that is if no entry is encrypted
+     * or uses an unsupported compression method.
+     */
+    static final int FLAG_COMPLETE = 2;
+
+    /**
+     * Locates the end of central directory record of a jar.
+     *
+     * @param buffer The end of the jar, in little-endian byte order
+     * @return The offset of the record within the buffer, or -1 if the buffer does not contain such a record
+     */
+    static int findEndOfCentralDirectory(@NotNull ByteBuffer buffer) {
+        int lowestCandidate = Math.max(0, buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE - 0xFFFF);
+        for (int i = buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; i >= lowestCandidate; i--) {
+            if (buffer.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Obtains the offset of the central directory from the end of central directory record of a jar.
+     *
+     * @param buffer The buffer containing the record
+     * @param eocd The offset of the record within the buffer
+     * @return The offset of the central directory within the jar, or -1 if the jar uses Zip64 extensions
+     */
+    static long getCentralDirectoryOffset(@NotNull ByteBuffer buffer, int eocd) {
+        long directoryOffset = Integer.toUnsignedLong(buffer.getInt(eocd + 16));
+        if (Short.toUnsignedInt(buffer.getShort(eocd + 10)) == 0xFFFF || directoryOffset == 0xFFFFFFFFL) {
+            return -1;
+        }
+        return directoryOffset;
+    }
+
+    /**
+     * Scans the central directory of a jar.
+     *
+     * @param buffer The end of the jar starting at an arbitrary offset at or before the central directory,
+     * in little-endian byte order
+     * @param base The offset of the start of the buffer within the jar
+     * @param path The path of the jar, used for error messages
+     * @return The index of the jar, or null if the jar uses Zip64 extensions
+     * @throws IOException If the jar is corrupt
+     */
+    @Nullable
+    static JarIndex scan(@NotNull ByteBuffer buffer, int base, @NotNull Path path) throws IOException {
+        int eocd = JarIndex.findEndOfCentralDirectory(buffer);
+        if (eocd == -1) {
+            throw new IOException("Not a zip file: " + path);
+        }
+
+        int entryCount = Short.toUnsignedInt(buffer.getShort(eocd + 10));
+        long directoryOffset = JarIndex.getCentralDirectoryOffset(buffer, eocd);
+        if (directoryOffset == -1) {
+            return null; // Zip64
+        }
+        if (directoryOffset < base || directoryOffset - base > eocd) {
+            throw new IOException("Corrupt central directory in " + path + ": Directory offset out of bounds");
+        }
+
+        int[] centralOffsets = new int[entryCount];
+        int[] hashes = new int[entryCount];
+        Set<String> packages = new LinkedHashSet<>();
+        int flags = FLAG_COMPLETE;
+        int supportedEntries = 0;
+        int offset = (int) (directoryOffset - base);
+        for (int i = 0; i < entryCount; i++) {
+            // Every record must lie in between the start of the central directory and the end of central directory record
+            if (eocd - offset < CENTRAL_HEADER_SIZE || buffer.getInt(offset) != CENTRAL_HEADER_SIGNATURE) {
+                throw new IOException("Corrupt central directory in " + path);
+            }
+            int entryFlags = Short.toUnsignedInt(buffer.getShort(offset + 8));
+            int method = Short.toUnsignedInt(buffer.getShort(offset + 10));
+            long compressedSize = Integer.toUnsignedLong(buffer.getInt(offset + 20));
+            long size = Integer.toUnsignedLong(buffer.getInt(offset + 24));
+            int nameLength = Short.toUnsignedInt(buffer.getShort(offset + 28));
+            int extraLength = Short.toUnsignedInt(buffer.getShort(offset + 30));
+            int commentLength = Short.toUnsignedInt(buffer.getShort(offset + 32));
+            long localHeaderOffset = Integer.toUnsignedLong(buffer.getInt(offset + 42));
+            if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL) {
+                return null; // Zip64
+            }
+            if (eocd - offset - CENTRAL_HEADER_SIZE < nameLength + extraLength + commentLength) {
+                throw new IOException("Corrupt central directory in " + path + ": Entry " + i + " out of bounds");
+            }
+            String entryName = JarIndex.readString(buffer, offset + CENTRAL_HEADER_SIZE, nameLength);
+            if (entryName.startsWith("META-INF/versions/")) {
+                flags |= FLAG_MULTI_RELEASE;
+            }
+            if (entryName.endsWith(".class")) {
+                JarIndex.addPackage(packages, entryName);
+            }
+            if ((entryFlags & 1) == 0 && (method == METHOD_STORED || method == METHOD_DEFLATED)) {
+                centralOffsets[supportedEntries] = base + offset;
+                hashes[supportedEntries++] = entryName.hashCode();
+            } else {
+                flags &= ~FLAG_COMPLETE;
+            }
+            offset += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        byte[] endRecord = new byte[END_OF_CENTRAL_DIRECTORY_SIZE];
+        ByteBuffer end = buffer.duplicate();
+        end.position(eocd);
+        end.get(endRecord);
+        return new JarIndex(base + eocd, endRecord, flags, Arrays.copyOf(centralOffsets, supportedEntries),
+                Arrays.copyOf(hashes, supportedEntries), packages.toArray(new @NotNull String[0]));
+    }
+
+    private static void addPackage(@NotNull Set<String> packages, @NotNull String path) {
+        if (path.startsWith("META-INF/versions/")) {
+            // Multi-release jar: "META-INF/versions/<version>/<path>"
+            int versionEnd = path.indexOf('/', 18);
+            if (versionEnd == -1) {
+                return;
+            }
+            path = path.substring(versionEnd + 1);
+        }
+        int lastSlash = path.lastIndexOf('/');
+        packages.add(lastSlash == -1 ? "" : path.substring(0, lastSlash).replace('/', '.'));
+    }
+
+    @NotNull
+    static String readString(@NotNull ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset);
+        slice.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The offset of the end of central directory record within the jar.
+     */
+    final int endOffset;
+
+    /**
+     * The contents of the end of central directory record, which are used to verify that the index still
+     * matches the jar.
+     */
+    final byte @NotNull[] endRecord;
+
+    final int flags;
+
+    /**
+     * The offsets of the central directory records of the supported entries.
+     */
+    final int @NotNull[] centralOffsets;
+
+    /**
+     * The {@link String#hashCode() hashes} of the names of the supported entries.
+     */
+    final int @NotNull[] hashes;
+
+    /**
+     * The names of the packages of the classes contained by the jar, including classes in versioned entries.
+     */
+    @NotNull
+    final String @NotNull[] packages;
+
+    JarIndex(int endOffset, byte @NotNull[] endRecord, int flags, int @NotNull[] centralOffsets, int @NotNull[] hashes, @NotNull String @NotNull[] packages) {
+        this.endOffset = endOffset;
+        this.endRecord = endRecord;
+        this.flags = flags;
+        this.centralOffsets = centralOffsets;
+        this.hashes = hashes;
+        this.packages = packages;
+    }
+
+    boolean isComplete() {
+        return (this.flags & FLAG_COMPLETE) != 0;
+    }
+
+    boolean isMultiRelease() {
+        return (this.flags & FLAG_MULTI_RELEASE) != 0;
+    }
+
+    /**
+     * Checks whether the end of central directory record at the given offset equals the record the index was built from.
+     * As the record stores the size, offset and entry count of the central directory, any change to the
+     * central directory will almost certainly be caught by this check.
+     *
+     * @param buffer The buffer containing the record
+     * @param offset The offset of the record within the buffer
+     * @return True if the record is unchanged
+     */
+    boolean matches(@NotNull ByteBuffer buffer, int offset) {
+        if (offset < 0 || buffer.limit() - offset < END_OF_CENTRAL_DIRECTORY_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < END_OF_CENTRAL_DIRECTORY_SIZE; i++) {
+            if (buffer.get(offset + i) != this.endRecord[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
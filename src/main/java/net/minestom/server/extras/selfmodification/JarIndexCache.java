@@ -0,0 +1,459 @@
+package net.minestom.server.extras.selfmodification;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.jetbrains.annotations.ApiStatus.AvailableSince;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.geolykt.starloader.util.JavaInterop;
+
+/**
+ * A persistent cache of the {@link JarIndex indices} of the jars used by the launcher, which includes the game jar,
+ * the jars on the classpath of the root classloader and extension jars. Thanks to the cache, the central directories of
+ * these jars are only scanned once after they have been changed instead of on every launch.
+ *
+ * <p>The indices are keyed by the absolute path, size and modification time of the jar. Additionally, the end of
+ * central directory record of the jar needs to be unchanged. Indices which were created or used during a run are
+ * written to the cache file when the JVM shuts down.
+ *
+ * <p>The cache is enabled by default and can be disabled by setting the "classloader.jarindex" system property to false.
+ * The location of the cache file can be changed through the "classloader.jarindex.file" system property.
+ *
+ * @since 4.0.0
+ */
+@AvailableSince(value = "4.0.0-a20261016")
+public final class JarIndexCache {
+
+    private static final class Holder {
+        @NotNull
+        private static final JarIndexCache INSTANCE = JarIndexCache.createDefault();
+    }
+
+    private static final class Record {
+        private final long size;
+        private final long lastModified;
+        @NotNull
+        private final JarIndex index;
+
+        private Record(long size, long lastModified, @NotNull JarIndex index) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.index = index;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JarIndexCache.class);
+
+    private static final int MAGIC = 0x534C4A49; // "SLJI"
+    private static final int VERSION = 1;
+
+    @NotNull
+    private static JarIndexCache createDefault() {
+        if (!Boolean.parseBoolean(System.getProperty("classloader.jarindex", "true"))) {
+            return new JarIndexCache(null);
+        }
+        String file = System.getProperty("classloader.jarindex.file");
+        Path path;
+        if (file == null) {
+            path = new File(de.geolykt.starloader.launcher.Utils.getApplicationFolder(), "jarindex.bin").toPath();
+        } else {
+            path = Paths.get(file);
+        }
+        if (path == null) {
+            throw new AssertionError();
+        }
+        return new JarIndexCache(path);
+    }
+
+    @NotNull
+    static JarIndexCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Reads an entry of a jar file. The entry is located through the cached index of the jar if possible, which
+     * avoids scanning the central directory of the jar. Otherwise, or if the entry cannot be read through the index,
+     * the entry is read through a {@link ZipFile}. The jar is not memory-mapped and is closed before returning,
+     * so that the jar can be replaced or deleted afterwards.
+     *
+     * @param jar The path of the jar
+     * @param name The name of the entry
+     * @return The contents of the entry, or null if the jar does not contain such an entry
+     * @throws IOException If the jar could not be read or is corrupt
+     * @since 4.0.0
+     */
+    public static byte @Nullable[] readEntry(@NotNull Path jar, @NotNull String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+            JarIndex index = JarIndexCache.getInstance().getIndex(jar, channel);
+            if (index != null) {
+                ByteBuffer entry = JarIndexCache.readEntry(channel, index, name);
+                if (entry != null) {
+                    return MappedJarFile.toByteArray(entry);
+                } else if (index.isComplete()) {
+                    return null;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Corrupt offsets within the jar surface as buffer exceptions
+            throw new IOException("Corrupt jar " + jar, e);
+        }
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            ZipEntry entry = zip.getEntry(name);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream in = zip.getInputStream(entry)) {
+                return JavaInterop.readAllBytes(in, (int) entry.getSize());
+            }
+        }
+    }
+
+    @Nullable
+    private static ByteBuffer readEntry(@NotNull FileChannel channel, @NotNull JarIndex index, @NotNull String name) throws IOException {
+        int hash = name.hashCode();
+        byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(JarIndex.CENTRAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer entryName = ByteBuffer.allocate(encodedName.length);
+        for (int i = 0; i < index.hashes.length; i++) {
+            if (index.hashes[i] != hash) {
+                continue;
+            }
+            header.clear();
+            JarIndexCache.readFully(channel, header, index.centralOffsets[i]);
+            if (Short.toUnsignedInt(header.getShort(28)) != encodedName.length) {
+                continue;
+            }
+            entryName.clear();
+            JarIndexCache.readFully(channel, entryName, index.centralOffsets[i] + JarIndex.CENTRAL_HEADER_SIZE);
+            if (!Arrays.equals(entryName.array(), encodedName)) {
+                continue;
+            }
+            int method = Short.toUnsignedInt(header.getShort(10));
+            int compressedSize = header.getInt(20);
+            int size = header.getInt(24);
+            long localHeader = Integer.toUnsignedLong(header.getInt(42));
+            ByteBuffer localHeaderRecord = ByteBuffer.allocate(JarIndex.LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            JarIndexCache.readFully(channel, localHeaderRecord, localHeader);
+            if (localHeaderRecord.getInt(0) != JarIndex.LOCAL_HEADER_SIGNATURE) {
+                throw new IOException("Corrupt local header of entry " + name);
+            }
+            long dataOffset = localHeader + JarIndex.LOCAL_HEADER_SIZE
+                    + Short.toUnsignedInt(localHeaderRecord.getShort(26))
+                    + Short.toUnsignedInt(localHeaderRecord.getShort(28));
+            if (compressedSize < 0 || channel.size() - dataOffset < compressedSize) {
+                throw new IOException("Corrupt entry " + name + ": Contents out of bounds");
+            }
+            ByteBuffer data = ByteBuffer.allocate(compressedSize);
+            JarIndexCache.readFully(channel, data, dataOffset);
+            data.flip();
+            return MappedJarFile.decode(data, method, size, name);
+        }
+        return null;
+    }
+
+    /**
+     * Fills the remaining space of a buffer with the contents of a file, starting at the given position.
+     *
+     * @param channel The file
+     * @param buffer The buffer to fill
+     * @param position The position within the file
+     * @throws IOException If the file could not be read or ends before the buffer is filled
+     */
+    private static void readFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - start) <= 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    @Nullable
+    private final Path file;
+
+    /**
+     * The records read from the cache file. Not modified after construction.
+     */
+    @NotNull
+    private final Map<String, Record> persisted;
+
+    /**
+     * The records which were created or used during this run.
+     */
+    @NotNull
+    private final Map<String, Record> current = new ConcurrentHashMap<>();
+
+    /**
+     * Whether a record was created during this run, in which case the cache file needs to be rewritten.
+     */
+    private volatile boolean dirty;
+
+    private JarIndexCache(@Nullable Path file) {
+        this.file = file;
+        if (file == null) {
+            this.persisted = Collections.emptyMap();
+        } else {
+            this.persisted = JarIndexCache.read(file);
+            Runtime.getRuntime().addShutdownHook(new Thread(this::write, "Starloader jar index writer"));
+        }
+    }
+
+    @NotNull
+    private static String getKey(@NotNull Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Obtains the index of a jar that is already memory-mapped, scanning the central directory of the jar only
+     * if no up-to-date index is cached.
+     *
+     * @param path The path of the jar
+     * @param mapping The contents of the jar, in little-endian byte order
+     * @return The index of the jar, or null if the jar uses Zip64 extensions
+     * @throws IOException If the jar is corrupt or could not be read
+     */
+    @Nullable
+    JarIndex getIndex(@NotNull Path path, @NotNull ByteBuffer mapping) throws IOException {
+        String key = JarIndexCache.getKey(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        Record record = this.lookup(key, mapping.limit(), lastModified);
+        if (record != null && record.index.matches(mapping, record.index.endOffset)) {
+            return record.index;
+        }
+        return this.scan(key, mapping, 0, mapping.limit(), path, lastModified);
+    }
+
+    /**
+     * Obtains the index of a jar, scanning the central directory of the jar only if no up-to-date index is cached.
+     * The jar is not memory-mapped.
+     *
+     * @param path The path of the jar
+     * @return The index of the jar, or null if the jar cannot be indexed
+     * @throws IOException If the jar is corrupt or could not be read
+     */
+    @Nullable
+    JarIndex getIndex(@NotNull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return this.getIndex(path, channel);
+        }
+    }
+
+    /**
+     * Obtains the index of a jar that was opened as a channel. On a cache miss, only the central directory
+     * and the records following it are read from the channel.
+     *
+     * @param path The path of the jar
+     * @param channel The contents of the jar
+     * @return The index of the jar, or null if the jar cannot be indexed
+     * @throws IOException If the jar is corrupt or could not be read
+     */
+    @Nullable
+    private JarIndex getIndex(@NotNull Path path, @NotNull FileChannel channel) throws IOException {
+        String key = JarIndexCache.getKey(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            return null;
+        }
+        Record record = this.lookup(key, size, lastModified);
+        if (record != null && size - record.index.endOffset >= JarIndex.END_OF_CENTRAL_DIRECTORY_SIZE) {
+            ByteBuffer end = ByteBuffer.allocate(JarIndex.END_OF_CENTRAL_DIRECTORY_SIZE);
+            JarIndexCache.readFully(channel, end, record.index.endOffset);
+            if (record.index.matches(end, 0)) {
+                return record.index;
+            }
+        }
+
+        // Locate the central directory within the comment-sized tail of the jar and read the central directory
+        int tailOffset = (int) Math.max(0, size - JarIndex.END_OF_CENTRAL_DIRECTORY_SIZE - 0xFFFF);
+        ByteBuffer tail = ByteBuffer.allocate((int) size - tailOffset).order(ByteOrder.LITTLE_ENDIAN);
+        JarIndexCache.readFully(channel, tail, tailOffset);
+        int eocd = JarIndex.findEndOfCentralDirectory(tail);
+        if (eocd == -1) {
+            throw new IOException("Not a zip file: " + path);
+        }
+        long directoryOffset = JarIndex.getCentralDirectoryOffset(tail, eocd);
+        if (directoryOffset == -1) {
+            return null; // Zip64
+        }
+        if (directoryOffset > tailOffset + eocd) {
+            throw new IOException("Corrupt central directory in " + path + ": Directory offset out of bounds");
+        }
+        ByteBuffer directory;
+        if (directoryOffset >= tailOffset) {
+            directory = tail;
+            directoryOffset = tailOffset;
+        } else {
+            directory = ByteBuffer.allocate((int) (size - directoryOffset)).order(ByteOrder.LITTLE_ENDIAN);
+            JarIndexCache.readFully(channel, directory, directoryOffset);
+        }
+        return this.scan(key, directory, (int) directoryOffset, size, path, lastModified);
+    }
+
+    @Nullable
+    private Record lookup(@NotNull String key, long size, long lastModified) {
+        Record record = this.current.get(key);
+        if (record == null) {
+            record = this.persisted.get(key);
+        }
+        if (record == null || record.size != size || record.lastModified != lastModified) {
+            return null;
+        }
+        this.current.putIfAbsent(key, record);
+        return record;
+    }
+
+    @Nullable
+    private JarIndex scan(@NotNull String key, @NotNull ByteBuffer buffer, int base, long size, @NotNull Path path, long lastModified) throws IOException {
+        JarIndex index = JarIndex.scan(buffer, base, path);
+        if (index != null) {
+            this.current.put(key, new Record(size, lastModified, index));
+            this.dirty = true;
+        }
+        return index;
+    }
+
+    /**
+     * Reads the cache file. The file is read in it's entirety rather than memory-mapped, as a mapping
+     * would prevent the file from being replaced on some platforms until the mapping is garbage collected.
+     *
+     * @param file The cache file
+     * @return The records stored within the file, or an empty map if the file is absent or corrupt
+     */
+    @NotNull
+    private static Map<String, Record> read(@NotNull Path file) {
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (NoSuchFileException e) {
+            return Collections.emptyMap();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read jar index cache from {}", file, e);
+            return Collections.emptyMap();
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return Collections.emptyMap();
+            }
+            int recordCount = buffer.getInt();
+            Map<String, Record> records = new HashMap<>();
+            for (int i = 0; i < recordCount; i++) {
+                String key = JarIndexCache.readString(buffer);
+                long size = buffer.getLong();
+                long lastModified = buffer.getLong();
+                int endOffset = buffer.getInt();
+                byte[] endRecord = new byte[JarIndex.END_OF_CENTRAL_DIRECTORY_SIZE];
+                buffer.get(endRecord);
+                int flags = buffer.getInt();
+                int[] centralOffsets = new int[buffer.getInt()];
+                buffer.asIntBuffer().get(centralOffsets);
+                buffer.position(buffer.position() + centralOffsets.length * 4);
+                int[] hashes = new int[centralOffsets.length];
+                buffer.asIntBuffer().get(hashes);
+                buffer.position(buffer.position() + hashes.length * 4);
+                String[] packages = new String[buffer.getInt()];
+                for (int j = 0; j < packages.length; j++) {
+                    packages[j] = JarIndexCache.readString(buffer);
+                }
+                records.put(key, new Record(size, lastModified, new JarIndex(endOffset, endRecord, flags, centralOffsets, hashes, packages)));
+            }
+            return records;
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            LOGGER.warn("Ignoring corrupt jar index cache at {}", file, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    @NotNull
+    private static String readString(@NotNull ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(@NotNull DataOutputStream out, @NotNull String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void write() {
+        Path file = this.file;
+        if (!this.dirty || file == null) {
+            return;
+        }
+        Map<String, Record> records = new HashMap<>(this.current);
+        // Retain the records of jars that were not used during this run, unless they no longer exist
+        this.persisted.forEach((key, record) -> {
+            if (!records.containsKey(key) && Files.exists(Paths.get(key))) {
+                records.put(key, record);
+            }
+        });
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tempFile = Files.createTempFile(parent, "jarindex", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(records.size());
+                for (Map.Entry<String, Record> entry : records.entrySet()) {
+                    Record record = entry.getValue();
+                    JarIndex index = record.index;
+                    JarIndexCache.writeString(out, entry.getKey());
+                    out.writeLong(record.size);
+                    out.writeLong(record.lastModified);
+                    out.writeInt(index.endOffset);
+                    out.write(index.endRecord);
+                    out.writeInt(index.flags);
+                    out.writeInt(index.centralOffsets.length);
+                    for (int offset : index.centralOffsets) {
+                        out.writeInt(offset);
+                    }
+                    for (int hash : index.hashes) {
+                        out.writeInt(hash);
+                    }
+                    out.writeInt(index.packages.length);
+                    for (String packageName : index.packages) {
+                        JarIndexCache.writeString(out, packageName);
+                    }
+                }
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write jar index cache to {}", file, e);
+        }
+    }
+}
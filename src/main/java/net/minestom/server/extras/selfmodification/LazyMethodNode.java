@@ -0,0 +1,376 @@
+package net.minestom.server.extras.selfmodification;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.ListIterator;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodNode;
+
+import de.geolykt.starloader.transformers.ASMTransformer;
+
+/**
+ * A {@link MethodNode} whose body is only decoded from the original class once the {@link #instructions}
+ * of the method are accessed. Methods whose body was never decoded are streamed from the original class
+ * in a single pass when the class is written, which allows class writers created from the same {@link ClassReader}
+ * to copy them as-is.
+ *
+ * @see ASMTransformer#supportsLazyMethodBodies()
+ */
+final class LazyMethodNode extends MethodNode {
+
+    /**
+     * An {@link InsnList} that decodes the body of it's method before any operation is performed on it.
+     */
+    private static final class LazyInsnList extends InsnList {
+        @NotNull
+        private final LazyMethodNode owner;
+
+        private LazyInsnList(@NotNull LazyMethodNode owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void accept(MethodVisitor methodVisitor) {
+            this.owner.materialize();
+            super.accept(methodVisitor);
+        }
+
+        @Override
+        public void add(AbstractInsnNode insnNode) {
+            this.owner.materialize();
+            super.add(insnNode);
+        }
+
+        @Override
+        public void add(InsnList insnList) {
+            this.owner.materialize();
+            super.add(insnList);
+        }
+
+        @Override
+        public void clear() {
+            this.owner.materialize();
+            super.clear();
+        }
+
+        @Override
+        public boolean contains(AbstractInsnNode insnNode) {
+            this.owner.materialize();
+            return super.contains(insnNode);
+        }
+
+        @Override
+        public AbstractInsnNode get(int index) {
+            this.owner.materialize();
+            return super.get(index);
+        }
+
+        @Override
+        public AbstractInsnNode getFirst() {
+            this.owner.materialize();
+            return super.getFirst();
+        }
+
+        @Override
+        public AbstractInsnNode getLast() {
+            this.owner.materialize();
+            return super.getLast();
+        }
+
+        @Override
+        public int indexOf(AbstractInsnNode insnNode) {
+            this.owner.materialize();
+            return super.indexOf(insnNode);
+        }
+
+        @Override
+        public void insert(AbstractInsnNode insnNode) {
+            this.owner.materialize();
+            super.insert(insnNode);
+        }
+
+        @Override
+        public void insert(AbstractInsnNode previousInsn, AbstractInsnNode insnNode) {
+            this.owner.materialize();
+            super.insert(previousInsn, insnNode);
+        }
+
+        @Override
+        public void insert(AbstractInsnNode previousInsn, InsnList insnList) {
+            this.owner.materialize();
+            super.insert(previousInsn, insnList);
+        }
+
+        @Override
+        public void insert(InsnList insnList) {
+            this.owner.materialize();
+            super.insert(insnList);
+        }
+
+        @Override
+        public void insertBefore(AbstractInsnNode nextInsn, AbstractInsnNode insnNode) {
+            this.owner.materialize();
+            super.insertBefore(nextInsn, insnNode);
+        }
+
+        @Override
+        public void insertBefore(AbstractInsnNode nextInsn, InsnList insnList) {
+            this.owner.materialize();
+            super.insertBefore(nextInsn, insnList);
+        }
+
+        @Override
+        public ListIterator<AbstractInsnNode> iterator() {
+            this.owner.materialize();
+            return super.iterator();
+        }
+
+        @Override
+        public ListIterator<AbstractInsnNode> iterator(int index) {
+            this.owner.materialize();
+            return super.iterator(index);
+        }
+
+        @Override
+        public void remove(AbstractInsnNode insnNode) {
+            this.owner.materialize();
+            super.remove(insnNode);
+        }
+
+        @Override
+        public void resetLabels() {
+            this.owner.materialize();
+            super.resetLabels();
+        }
+
+        @Override
+        public void set(AbstractInsnNode oldInsnNode, AbstractInsnNode newInsnNode) {
+            this.owner.materialize();
+            super.set(oldInsnNode, newInsnNode);
+        }
+
+        @Override
+        public int size() {
+            this.owner.materialize();
+            return super.size();
+        }
+
+        @Override
+        public AbstractInsnNode[] toArray() {
+            this.owner.materialize();
+            return super.toArray();
+        }
+    }
+
+    /**
+     * A class read by {@link LazyMethodNode#readClass(ClassReader, int)}, which keeps track of the state shared
+     * by it's lazy methods so that the original class is walked as rarely as possible.
+     */
+    private static final class LazyClassNode extends ClassNode {
+        /**
+         * The amount of passes over the original class that decode a single method, after which all remaining
+         * methods are decoded at once. This bounds the amount of passes for transformers that access the
+         * instructions of most methods, while transformers touching only a few methods keep the others lazy.
+         */
+        private static final int MAX_SINGLE_METHOD_PASSES = 4;
+
+        @NotNull
+        private final ClassReader reader;
+        private final int readerFlags;
+        private int singleMethodPasses;
+
+        /**
+         * The visitor passed to the ongoing invocation of {@link #accept(ClassVisitor)}, or null.
+         */
+        private ClassVisitor target;
+
+        /**
+         * Whether the lazy methods were already streamed to {@link #target}.
+         */
+        private boolean streamed;
+
+        private LazyClassNode(@NotNull ClassReader reader, int readerFlags) {
+            super(Opcodes.ASM9);
+            this.reader = reader;
+            this.readerFlags = readerFlags;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            LazyMethodNode method = new LazyMethodNode(this, access, name, descriptor, signature, exceptions);
+            this.methods.add(method);
+            return method;
+        }
+
+        @Override
+        public void accept(ClassVisitor classVisitor) {
+            this.target = classVisitor;
+            this.streamed = false;
+            try {
+                super.accept(classVisitor);
+            } finally {
+                this.target = null;
+            }
+        }
+
+        /**
+         * Collects the methods of this class whose body was not yet decoded, keyed by their original name and descriptor.
+         *
+         * @return The lazy methods
+         */
+        @NotNull
+        private Map<String, LazyMethodNode> getLazyMethods() {
+            Map<String, LazyMethodNode> lazyMethods = new HashMap<>();
+            for (MethodNode method : this.methods) {
+                if (method instanceof LazyMethodNode && ((LazyMethodNode) method).owner == this && !((LazyMethodNode) method).materialized) {
+                    LazyMethodNode lazyMethod = (LazyMethodNode) method;
+                    lazyMethods.put(lazyMethod.originalName + lazyMethod.originalDesc, lazyMethod);
+                }
+            }
+            return lazyMethods;
+        }
+
+        /**
+         * Streams all methods whose body was not yet decoded from the original class to the visitor
+         * in a single pass. The methods are emitted in the order of the original class at the position of the
+         * first such method. Class writers created from the same reader copy the methods as-is, as long as
+         * their descriptor and signature are unchanged.
+         *
+         * @param classVisitor The visitor, which must be the visitor of the ongoing {@link #accept(ClassVisitor)} call
+         */
+        private void streamLazyMethods(@NotNull ClassVisitor classVisitor) {
+            if (this.streamed) {
+                return;
+            }
+            this.streamed = true;
+            Map<String, LazyMethodNode> lazyMethods = this.getLazyMethods();
+            this.reader.accept(new ClassVisitor(Opcodes.ASM9) {
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                    LazyMethodNode method = lazyMethods.get(name + descriptor);
+                    if (method == null) {
+                        return null;
+                    }
+                    return classVisitor.visitMethod(method.access, method.name, method.desc, method.signature,
+                            method.exceptions == null ? null : method.exceptions.toArray(new String[0]));
+                }
+            }, this.readerFlags);
+        }
+
+        /**
+         * Decodes the body of a method from the original class. Once {@link #MAX_SINGLE_METHOD_PASSES} were spent,
+         * the bodies of all other lazy methods of the class are decoded within the same pass.
+         *
+         * @param method The method to decode
+         */
+        private void materialize(@NotNull LazyMethodNode method) {
+            Map<String, LazyMethodNode> methods;
+            if (this.singleMethodPasses++ < MAX_SINGLE_METHOD_PASSES) {
+                methods = Collections.singletonMap(method.originalName + method.originalDesc, method);
+            } else {
+                methods = this.getLazyMethods();
+                // The method may have been removed from the class by a transformer
+                methods.put(method.originalName + method.originalDesc, method);
+            }
+            for (LazyMethodNode lazyMethod : methods.values()) {
+                lazyMethod.materialized = true;
+            }
+            this.reader.accept(new ClassVisitor(Opcodes.ASM9) {
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                    LazyMethodNode lazyMethod = methods.get(name + descriptor);
+                    if (lazyMethod == null) {
+                        return null;
+                    }
+                    // The header of the method (annotations, parameters and attributes) was already read, so only
+                    // the events starting with visitCode are passed on to the node
+                    return new MethodVisitor(Opcodes.ASM9) {
+                        @Override
+                        public void visitCode() {
+                            this.mv = lazyMethod;
+                            super.visitCode();
+                        }
+                    };
+                }
+            }, this.readerFlags);
+        }
+    }
+
+    /**
+     * Reads a class, deferring the decoding of the method bodies until they are needed.
+     *
+     * @param reader The reader of the class
+     * @param readerFlags The flags to pass to {@link ClassReader#accept(ClassVisitor, int)}
+     * @return The class, with all methods being {@link LazyMethodNode lazy method nodes}
+     */
+    @NotNull
+    static ClassNode readClass(@NotNull ClassReader reader, int readerFlags) {
+        ClassNode node = new LazyClassNode(reader, readerFlags);
+        reader.accept(node, readerFlags | ClassReader.SKIP_CODE);
+        return node;
+    }
+
+    @NotNull
+    private final LazyClassNode owner;
+    @NotNull
+    private final String originalName;
+    @NotNull
+    private final String originalDesc;
+    private boolean materialized;
+
+    private LazyMethodNode(@NotNull LazyClassNode owner, int access, @NotNull String name,
+            @NotNull String descriptor, String signature, String[] exceptions) {
+        super(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+        this.owner = owner;
+        this.originalName = name;
+        this.originalDesc = descriptor;
+        this.instructions = new LazyInsnList(this);
+    }
+
+    @Override
+    public void accept(ClassVisitor classVisitor) {
+        if (this.materialized) {
+            super.accept(classVisitor);
+        } else if (classVisitor == this.owner.target) {
+            // The owning class is being written: All untouched methods are streamed in a single pass
+            this.owner.streamLazyMethods(classVisitor);
+        } else {
+            // The method is copied on it's own, so only this method may be streamed
+            LazyMethodNode method = this;
+            this.owner.reader.accept(new ClassVisitor(Opcodes.ASM9) {
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                    if (!name.equals(method.originalName) || !descriptor.equals(method.originalDesc)) {
+                        return null;
+                    }
+                    return classVisitor.visitMethod(method.access, method.name, method.desc, method.signature,
+                            method.exceptions == null ? null : method.exceptions.toArray(new String[0]));
+                }
+            }, this.owner.readerFlags);
+        }
+    }
+
+    @Override
+    public void accept(MethodVisitor methodVisitor) {
+        this.materialize();
+        super.accept(methodVisitor);
+    }
+
+    /**
+     * Decodes the body of the method from the original class, if not already done.
+     */
+    private void materialize() {
+        if (!this.materialized) {
+            this.owner.materialize(this);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package net.minestom.server.extras.selfmodification;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import de.geolykt.starloader.transformers.RawClassData;
+
+/**
+ * {@link RawClassData} of a class read from a {@link MappedJarFile}. The URL of the class is only created
+ * if requested, as the classloader obtains the protection domain of the class from the jar directly.
+ */
+final class MappedClassData extends RawClassData {
+
+    @NotNull
+    private final MappedJarFile jar;
+
+    @NotNull
+    private final String entryName;
+
+    @Nullable
+    private volatile URL source;
+
+    MappedClassData(@NotNull MappedJarFile jar, @NotNull String entryName, byte @NotNull[] bytes) {
+        super(null, bytes);
+        this.jar = jar;
+        this.entryName = entryName;
+    }
+
+    @NotNull
+    MappedJarFile getJar() {
+        return this.jar;
+    }
+
+    @Override
+    @Nullable
+    public URL getSource() {
+        URL source = this.source;
+        if (source == null) {
+            try {
+                this.source = source = new URL("jar:" + this.jar.getURL().toExternalForm() + "!/" + this.entryName);
+            } catch (MalformedURLException e) {
+                return this.jar.getURL();
+            }
+        }
+        return source;
+    }
+}
@@ -0,0 +1,99 @@
+package net.minestom.server.extras.selfmodification;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The classpath of the {@link MinestomRootClassLoader}, backed by {@link MappedJarFile memory-mapped jars}.
+ * URLs which cannot be memory-mapped, such as directories, are tracked as well so that the lookup order of
+ * the {@link java.net.URLClassLoader} is preserved: Lookups which would need to consult such an URL are left to
+ * the regular resource lookup.
+ */
+final class MappedClassPath {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedClassPath.class);
+
+    /**
+     * The memory-mapped jars, in the order the URLs were added in.
+     * A null element denotes an URL which cannot be memory-mapped.
+     */
+    @NotNull
+    private final List<@Nullable MappedJarFile> jars = new CopyOnWriteArrayList<>();
+
+    /**
+     * Whether all URLs added to the classpath could be memory-mapped.
+     */
+    private volatile boolean complete = true;
+
+    /**
+     * Adds an URL to the end of the classpath.
+     *
+     * @param url The URL to add
+     * @param map Whether to memory-map the URL, should it be a jar
+     */
+    void add(@NotNull URL url, boolean map) {
+        MappedJarFile jar = map ? MappedClassPath.mapJar(url) : null;
+        if (jar == null) {
+            this.complete = false;
+        }
+        this.jars.add(jar);
+    }
+
+    @Nullable
+    private static MappedJarFile mapJar(@NotNull URL url) {
+        if (!url.getProtocol().equals("file")) {
+            return null;
+        }
+        try {
+            Path path = Paths.get(url.toURI());
+            if (!Files.isRegularFile(path)) {
+                return null;
+            }
+            return MappedJarFile.open(url, path);
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            LOGGER.debug("Unable to memory-map {}", url, e);
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether all URLs of the classpath are memory-mapped jars. In that case, an entry that cannot be
+     * {@link #locate(String) located} does not exist within the classpath.
+     *
+     * @return True if the classpath consists of memory-mapped jars only
+     */
+    boolean isComplete() {
+        return this.complete;
+    }
+
+    /**
+     * Locates the jar containing the given entry.
+     *
+     * @param name The name of the entry
+     * @return The first jar containing the entry, or null if no memory-mapped jar which precedes the first URL that
+     * cannot be memory-mapped contains the entry
+     */
+    @Nullable
+    MappedJarFile locate(@NotNull String name) {
+        for (MappedJarFile jar : this.jars) {
+            if (jar == null) {
+                return null;
+            }
+            if (jar.contains(name)) {
+                return jar;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,340 @@
+package net.minestom.server.extras.selfmodification;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A read-only view of a jar file that is memory-mapped in it's entirety. The central directory of the jar is
+ * {@link JarIndex indexed} once, after which entries can be read without going through {@link java.util.zip.ZipFile} and it's streams.
+ * Stored entries are returned as slices of the mapping without copying them, while deflated entries are
+ * inflated once into a buffer of the exact size of the entry.
+ *
+ * <p>The entries are located through a compact open-addressing hash table which only stores the offset of the central
+ * directory record and the hash of the name of each entry. The offsets and hashes are obtained from the
+ * {@link JarIndexCache}, so that the central directory is only scanned if the jar was changed. All other information, including the name itself,
+ * is read from the mapping when needed, so no objects are retained per entry.
+ *
+ * <p>Only plain jars are supported: Jars using Zip64 extensions, multi-release jars and jars containing encrypted entries
+ * or entries with compression methods other than stored and deflated are rejected by {@link #open(URL, Path)}, in which
+ * case the caller needs to fall back to the regular resource lookup.
+ */
+final class MappedJarFile {
+
+    /**
+     * The maximum ratio of the uncompressed to the compressed size of a deflated entry.
+     */
+    private static final long MAX_DEFLATE_RATIO = 1032;
+
+    /**
+     * Per-thread inflater, which is reset after every use.
+     */
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    /**
+     * The maximum size of the per-thread scratch buffers. Larger buffers are not retained so that reading
+     * a single large entry does not pin the memory forever.
+     */
+    private static final int MAX_SCRATCH_SIZE = 1 << 20;
+
+    /**
+     * Per-thread scratch buffer for the compressed contents of an entry, as inflaters only accept arrays on Java 8.
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    /**
+     * Maps and indexes the given jar file. The index of the jar is obtained from the {@link JarIndexCache} if possible.
+     * The mapping is only released once the instance is garbage collected, which prevents the jar from being
+     * replaced or deleted on some platforms. Jars should thus only be mapped if they are used for the remainder of the run.
+     *
+     * @param url The URL of the jar, used for the {@link CodeSource} of the classes defined from the jar
+     * @param path The path of the jar
+     * @return The mapped jar, or null if the jar or any of it's entries cannot be handled by this implementation
+     * @throws IOException If the jar could not be read
+     */
+    @Nullable
+    static MappedJarFile open(@NotNull URL url, @NotNull Path path) throws IOException {
+        MappedByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buffer = mapping.order(ByteOrder.LITTLE_ENDIAN);
+        JarIndex index = JarIndexCache.getInstance().getIndex(path, buffer);
+        if (index == null || index.isMultiRelease() || !index.isComplete()) {
+            // Lookups need to see every entry of the jar, as they would otherwise continue with the next URL
+            return null;
+        }
+        return new MappedJarFile(url, buffer, index);
+    }
+
+    /**
+     * Obtains the contents of a buffer returned by {@link #getEntry(String)} as an array, copying them only if necessary.
+     *
+     * @param buffer The buffer
+     * @return The remaining contents of the buffer
+     */
+    static byte @NotNull[] toByteArray(@NotNull ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @NotNull
+    private final ByteBuffer buffer;
+
+    @NotNull
+    private final URL url;
+
+    @NotNull
+    private final CodeSource codeSource;
+
+    /**
+     * The protection domain of the classes defined from this jar, cached by the root classloader.
+     */
+    @Nullable
+    volatile ProtectionDomain protectionDomain;
+
+    /**
+     * The offsets of the central directory records of the supported entries.
+     */
+    private final int @NotNull[] centralOffsets;
+
+    /**
+     * The {@link String#hashCode() hashes} of the names of the supported entries.
+     */
+    private final int @NotNull[] hashes;
+
+    /**
+     * Open-addressing hash table of the supported entries, storing the index of the entry plus one.
+     * Empty slots are denoted by 0. The length of the table is a power of two.
+     */
+    private final int @NotNull[] table;
+
+    private MappedJarFile(@NotNull URL url, @NotNull ByteBuffer buffer, @NotNull JarIndex index) {
+        this.buffer = buffer;
+        this.url = url;
+        this.codeSource = new CodeSource(url, (CodeSigner[]) null);
+        this.centralOffsets = index.centralOffsets;
+        this.hashes = index.hashes;
+        this.table = new int[Math.max(2, Integer.highestOneBit(Math.max(1, this.hashes.length) * 2 - 1) << 1)];
+        int mask = this.table.length - 1;
+        for (int i = 0; i < this.hashes.length; i++) {
+            int slot = MappedJarFile.spread(this.hashes[i]) & mask;
+            while (this.table[slot] != 0) {
+                if (this.nameEquals(this.table[slot] - 1, i)) {
+                    break; // Duplicate entry; the first entry takes precedence
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (this.table[slot] == 0) {
+                this.table[slot] = i + 1;
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Locates an entry within the hash table.
+     *
+     * @param name The name of the entry
+     * @return The index of the entry, or -1 if the jar does not contain such a supported entry
+     */
+    private int indexOf(@NotNull String name) {
+        int hash = name.hashCode();
+        int mask = this.table.length - 1;
+        for (int slot = MappedJarFile.spread(hash) & mask; this.table[slot] != 0; slot = (slot + 1) & mask) {
+            int index = this.table[slot] - 1;
+            if (this.hashes[index] == hash && this.nameEquals(this.centralOffsets[index], name)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private boolean nameEquals(int entryA, int entryB) {
+        int offsetA = this.centralOffsets[entryA];
+        int offsetB = this.centralOffsets[entryB];
+        int length = Short.toUnsignedInt(this.buffer.getShort(offsetA + 28));
+        if (this.hashes[entryA] != this.hashes[entryB] || length != Short.toUnsignedInt(this.buffer.getShort(offsetB + 28))) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (this.buffer.get(offsetA + JarIndex.CENTRAL_HEADER_SIZE + i) != this.buffer.get(offsetB + JarIndex.CENTRAL_HEADER_SIZE + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean nameEquals(int centralOffset, @NotNull String name) {
+        int length = Short.toUnsignedInt(this.buffer.getShort(centralOffset + 28));
+        int start = centralOffset + JarIndex.CENTRAL_HEADER_SIZE;
+        if (length == name.length()) {
+            int i = 0;
+            for (; i < length; i++) {
+                char c = name.charAt(i);
+                if (c >= 0x80) {
+                    break;
+                }
+                if (this.buffer.get(start + i) != c) {
+                    // The prefix up to here is ASCII, which is encoded identically in UTF-8
+                    return false;
+                }
+            }
+            if (i == length) {
+                return true;
+            }
+        } else {
+            boolean ascii = true;
+            for (int i = 0; i < name.length() && ascii; i++) {
+                ascii = name.charAt(i) < 0x80;
+            }
+            if (ascii) {
+                return false;
+            }
+        }
+        return JarIndex.readString(this.buffer, start, length).equals(name);
+    }
+
+    /**
+     * Obtains the code source of the classes defined from this jar.
+     *
+     * @return The code source
+     */
+    @NotNull
+    CodeSource getCodeSource() {
+        return this.codeSource;
+    }
+
+    /**
+     * Obtains the URL of the jar.
+     *
+     * @return The URL the jar was opened with
+     */
+    @NotNull
+    URL getURL() {
+        return this.url;
+    }
+
+    /**
+     * Checks whether the jar contains a supported entry with the given name.
+     *
+     * @param name The name of the entry
+     * @return True if {@link #getEntry(String)} would return the contents of the entry
+     */
+    boolean contains(@NotNull String name) {
+        return this.indexOf(name) != -1;
+    }
+
+    /**
+     * Reads the contents of an entry of the jar. This method may be called concurrently.
+     *
+     * @param name The name of the entry
+     * @return The contents of the entry, or null if the jar does not contain a supported entry with the given name
+     * @throws IOException If the entry is corrupt
+     */
+    @Nullable
+    ByteBuffer getEntry(@NotNull String name) throws IOException {
+        int index = this.indexOf(name);
+        if (index == -1) {
+            return null;
+        }
+        int centralOffset = this.centralOffsets[index];
+        int method = Short.toUnsignedInt(this.buffer.getShort(centralOffset + 10));
+        int compressedSize = this.buffer.getInt(centralOffset + 20);
+        int size = this.buffer.getInt(centralOffset + 24);
+        int localHeader = this.buffer.getInt(centralOffset + 42);
+        if (localHeader < 0 || this.buffer.limit() - localHeader < JarIndex.LOCAL_HEADER_SIZE || this.buffer.getInt(localHeader) != JarIndex.LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Corrupt local header of entry " + name);
+        }
+        int dataOffset = localHeader + JarIndex.LOCAL_HEADER_SIZE
+                + Short.toUnsignedInt(this.buffer.getShort(localHeader + 26))
+                + Short.toUnsignedInt(this.buffer.getShort(localHeader + 28));
+        if (compressedSize < 0 || this.buffer.limit() - dataOffset < compressedSize) {
+            throw new IOException("Corrupt entry " + name + ": Contents out of bounds");
+        }
+        ByteBuffer data = this.buffer.duplicate();
+        data.position(dataOffset);
+        data.limit(dataOffset + compressedSize);
+        return MappedJarFile.decode(data, method, size, name);
+    }
+
+    /**
+     * Decodes the contents of an entry.
+     *
+     * @param data The raw contents of the entry, from the position of the buffer up to it's limit
+     * @param method The compression method of the entry, which is either stored or deflated
+     * @param size The uncompressed size of the entry as declared by the central directory
+     * @param name The name of the entry, used for error messages
+     * @return The contents of the entry, which is a slice of the given buffer for stored entries
+     * @throws IOException If the entry is corrupt
+     */
+    @NotNull
+    static ByteBuffer decode(@NotNull ByteBuffer data, int method, int size, @NotNull String name) throws IOException {
+        int compressedSize = data.remaining();
+        // Deflate cannot exceed a compression ratio of 1032:1, so larger sizes can only stem from a corrupt jar
+        if (size < 0 || (method == JarIndex.METHOD_STORED ? size != compressedSize : size > compressedSize * MAX_DEFLATE_RATIO + 1)) {
+            throw new IOException("Corrupt entry " + name + ": Implausible size " + Integer.toUnsignedLong(size));
+        }
+        if (method == JarIndex.METHOD_STORED) {
+            return data.slice();
+        }
+
+        // The inflater requires an extra dummy byte after the compressed data in "nowrap" mode
+        byte[] scratch = SCRATCH.get();
+        if (scratch.length < compressedSize + 1) {
+            if (compressedSize + 1 > MAX_SCRATCH_SIZE) {
+                scratch = new byte[compressedSize + 1];
+            } else {
+                scratch = new byte[Math.min(MAX_SCRATCH_SIZE, Math.max(compressedSize + 1, scratch.length * 2))];
+                SCRATCH.set(scratch);
+            }
+        }
+        data.get(scratch, 0, compressedSize);
+        scratch[compressedSize] = 0;
+
+        byte[] contents = new byte[size];
+        Inflater inflater = INFLATER.get();
+        try {
+            inflater.setInput(scratch, 0, compressedSize + 1);
+            int read = 0;
+            while (read < contents.length) {
+                int inflated = inflater.inflate(contents, read, contents.length - read);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += inflated;
+            }
+            if (read != contents.length) {
+                throw new IOException("Unexpected size of entry " + name + ": Expected " + contents.length + " bytes, got " + read);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt entry " + name, e);
+        } finally {
+            inflater.reset();
+        }
+        return ByteBuffer.wrap(contents);
+    }
+}
@@ -1,7 +1,7 @@
 package net.minestom.server.extras.selfmodification;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -9,13 +9,19 @@ import java.nio.file.Paths;
 import java.security.CodeSigner;
 import java.security.CodeSource;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.jetbrains.annotations.ApiStatus.ScheduledForRemoval;
+import org.jetbrains.annotations.NotNull;
 import org.slf4j.LoggerFactory;
 
-import de.geolykt.starloader.util.JavaInterop;
-
 public class MinestomExtensionClassLoader extends HierarchyClassLoader {
 
     /**
@@ -25,13 +31,114 @@ public class MinestomExtensionClassLoader extends HierarchyClassLoader {
     private static final boolean DEBUG = Boolean.getBoolean("classloader.debug");
     private static final boolean DUMP = DEBUG || Boolean.getBoolean("classloader.dump");
 
+    /**
+     * The names of the packages of the classes contained by the URLs of this classloader.
+     */
+    private final Set<String> packages = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Whether {@link #packages} is incomplete as some URLs could not be indexed.
+     */
+    private volatile boolean unindexed;
+
     public MinestomExtensionClassLoader(String name, URL[] urls, MinestomRootClassLoader root) {
         super(name, urls, root);
         this.root = root;
+        for (URL url : urls) {
+            this.indexURL(url);
+        }
+    }
+
+    @Override
+    protected void addURL(URL url) {
+        super.addURL(url);
+        this.indexURL(url);
+    }
+
+    private void indexURL(URL url) {
+        if (!this.indexPackages(url)) {
+            LoggerFactory.getLogger(MinestomExtensionClassLoader.class).debug("Unable to index the packages of {}; Classloader {} will be consulted for all packages.", url, this.getName());
+            if (!this.unindexed) {
+                this.unindexed = true;
+                HierarchyClassLoader.addUnindexedLoader(this);
+            }
+        }
+    }
+
+    private boolean indexPackages(URL url) {
+        if (url == null || !url.getProtocol().equals("file")) {
+            return false;
+        }
+        try {
+            Path path = Paths.get(url.toURI());
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    Iterator<Path> it = files.iterator();
+                    while (it.hasNext()) {
+                        Path file = it.next();
+                        if (file.getFileName().toString().endsWith(".class")) {
+                            this.indexClassFile(path.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/"));
+                        }
+                    }
+                }
+            } else if (Files.isRegularFile(path)) {
+                JarIndex index = JarIndexCache.getInstance().getIndex(path);
+                if (index != null) {
+                    for (String packageName : index.packages) {
+                        this.indexPackage(packageName);
+                    }
+                    return true;
+                }
+                try (ZipFile zip = new ZipFile(path.toFile())) {
+                    Enumeration<? extends ZipEntry> entries = zip.entries();
+                    while (entries.hasMoreElements()) {
+                        ZipEntry entry = entries.nextElement();
+                        if (!entry.isDirectory() && entry.getName().endsWith(".class")) {
+                            this.indexClassFile(entry.getName());
+                        }
+                    }
+                }
+            }
+            // URLs that do not exist do not contain any classes
+            return true;
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void indexClassFile(@NotNull String path) {
+        if (path.startsWith("META-INF/versions/")) {
+            // Multi-release jar: "META-INF/versions/<version>/<path>"
+            int versionEnd = path.indexOf('/', 18);
+            if (versionEnd == -1) {
+                return;
+            }
+            path = path.substring(versionEnd + 1);
+        }
+        int lastSlash = path.lastIndexOf('/');
+        this.indexPackage(lastSlash == -1 ? "" : path.substring(0, lastSlash).replace('/', '.'));
+    }
+
+    private void indexPackage(@NotNull String packageName) {
+        if (this.packages.add(packageName)) {
+            HierarchyClassLoader.addRoute(packageName, this);
+        }
+    }
+
+    /**
+     * Checks whether this classloader could contain the class with the given name, based on the packages
+     * of the classes contained by the URLs of this classloader.
+     *
+     * @param name The binary name of the class
+     * @return False if the class is definitely not contained by this classloader
+     */
+    private boolean mayContainClass(@NotNull String name) {
+        return this.unindexed || this.packages.contains(HierarchyClassLoader.getPackageName(name));
     }
 
     @Override
     public void close() throws IOException {
+        HierarchyClassLoader.removeRoutes(this);
         synchronized (HierarchyClassLoader.class) {
             for (HierarchyClassLoader parent : this.parents) {
                 parent.removeChildInHierarchy(this);
@@ -52,6 +159,18 @@ public class MinestomExtensionClassLoader extends HierarchyClassLoader {
 
     @Override
     protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        int revision = HierarchyClassLoader.getHierarchyRevision();
+        try {
+            this.missingClasses.checkMissing(name);
+        } catch (ClassNotFoundException e) {
+            // Classes can be defined explicitly through MinestomRootClassLoader#transformAndDefineClass
+            // without the hierarchy revision changing, in which case the negative cache is outdated
+            Class<?> definedClass = this.root.findLoadedClass0(name);
+            if (definedClass == null) {
+                throw e;
+            }
+            return definedClass;
+        }
         try {
             return this.loadClassAsChild(name, resolve);
         } catch (ClassNotFoundException cnfe) {
@@ -59,6 +178,7 @@ public class MinestomExtensionClassLoader extends HierarchyClassLoader {
                 return root.loadClass(name, resolve);
             } catch (ClassNotFoundException e) {
                 e.addSuppressed(cnfe);
+                this.missingClasses.markMissing(name, revision);
                 throw e;
             }
         }
@@ -67,60 +187,79 @@ public class MinestomExtensionClassLoader extends HierarchyClassLoader {
     /**
      * Assumes the name is not null, nor it does represent a protected class.
      *
+     * <p>The class loading lock of this classloader is only held while the class is defined by this classloader.
+     * Children are consulted without holding the lock, which avoids lock-order inversions with the root classloader
+     * as children delegate to the root classloader themselves.
+     *
      * @param name
      * @return The loaded class
-     * @throws ClassNotFoundException if the class is not found inside this classloader
+     * @throws ClassNotFoundException if the class is not found inside this classloader or it's children
      */
     public Class<?> loadClassAsChild(String name, boolean resolve) throws ClassNotFoundException {
+        try {
+            return loadClassInSelf(name, resolve);
+        } catch (ClassNotFoundException e) {
+            return loadClassFromDescendants(name, resolve, e);
+        }
+    }
+
+    /**
+     * Loads a class from this classloader, without consulting the children of this classloader.
+     *
+     * @param name The binary name of the class
+     * @param resolve Whether to resolve the class
+     * @return The loaded class
+     * @throws ClassNotFoundException if the class is not found inside this classloader
+     */
+    Class<?> loadClassInSelf(@NotNull String name, boolean resolve) throws ClassNotFoundException {
         Class<?> loadedClass = findLoadedClass(name);
         if (loadedClass != null) {
             return loadedClass;
         }
+        if (!mayContainClass(name)) {
+            throw new ClassNotFoundException("Could not find class " + name);
+        }
+
+        synchronized (getClassLoadingLock(name)) {
+            return defineAsChild(name, resolve);
+        }
+    }
+
+    private Class<?> defineAsChild(String name, boolean resolve) throws ClassNotFoundException {
+        Class<?> loadedClass = findLoadedClass(name);
+        if (loadedClass != null) {
+            // Defined by another thread while we were waiting for the lock
+            return loadedClass;
+        }
 
+        // not in children, attempt load in this classloader
+        String path = name.replace(".", "/") + ".class";
+        URL url = this.findResource(path);
+        if (url == null) {
+            throw new ClassNotFoundException("Could not find class " + name);
+        }
         try {
-            // not in children, attempt load in this classloader
-            String path = name.replace(".", "/") + ".class";
-            URL url = this.findResource(path);
-            if (url == null) {
-                throw new ClassNotFoundException("Could not find class " + name);
-            }
-            try (InputStream in = url.openStream()) {
-                if (in == null) {
-                    throw new AssertionError();
-                }
-                byte[] bytes = JavaInterop.readAllBytes(in);
-                bytes = root.transformBytes(bytes, name);
-                if (DUMP) {
-                    Path parent = Paths.get("classes", path).getParent();
-                    if (parent != null) {
-                        Files.createDirectories(parent);
-                    }
-                    Files.write(Paths.get("classes", path), bytes);
-                }
-                String urlPath = url.getPath();
-                int seperatorIndex = urlPath.lastIndexOf('!');
-                if (seperatorIndex != -1) {
-                    url = new URL(urlPath.substring(0, seperatorIndex));
+            byte[] bytes = HierarchyClassLoader.readResource(url);
+            bytes = root.transformBytes(bytes, name);
+            if (DUMP) {
+                Path parent = Paths.get("classes", path).getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
                 }
-                Class<?> clazz = defineClass(name, bytes, 0, bytes.length, new CodeSource(url, (CodeSigner[]) null));
-                if (resolve) {
-                    resolveClass(clazz);
-                }
-                return clazz;
-            } catch (Throwable e) {
-                throw new ClassNotFoundException("Could not load class " + name, e);
+                Files.write(Paths.get("classes", path), bytes);
             }
-        } catch (ClassNotFoundException e) {
-            for (MinestomExtensionClassLoader child : children) {
-                try {
-                    Class<?> loaded = child.loadClassAsChild(name, resolve);
-                    return loaded;
-                } catch (ClassNotFoundException e1) {
-                    // move on to next child
-                    e.addSuppressed(e1);
-                }
+            String urlPath = url.getPath();
+            int seperatorIndex = urlPath.lastIndexOf('!');
+            if (seperatorIndex != -1) {
+                url = new URL(urlPath.substring(0, seperatorIndex));
+            }
+            Class<?> clazz = defineClass(name, bytes, 0, bytes.length, new CodeSource(url, (CodeSigner[]) null));
+            if (resolve) {
+                resolveClass(clazz);
             }
-            throw e;
+            return clazz;
+        } catch (Throwable e) {
+            throw new ClassNotFoundException("Could not load class " + name, e);
         }
     }
 
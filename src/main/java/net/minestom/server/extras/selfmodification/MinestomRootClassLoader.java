@@ -6,20 +6,24 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.CodeSigner;
 import java.security.CodeSource;
+import java.security.ProtectionDomain;
 import java.security.cert.Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jetbrains.annotations.ApiStatus.AvailableSince;
 import org.jetbrains.annotations.ApiStatus.Internal;
@@ -27,18 +31,23 @@ import org.jetbrains.annotations.ApiStatus.ScheduledForRemoval;
 import org.jetbrains.annotations.CheckReturnValue;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Unmodifiable;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.tree.ClassNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.geolykt.starloader.transformers.ASMTransformer;
+import de.geolykt.starloader.transformers.ASMVisitorTransformer;
 import de.geolykt.starloader.transformers.RawClassData;
 import de.geolykt.starloader.transformers.TransformableClassloader;
+import de.geolykt.starloader.transformers.TransformationKind;
 import de.geolykt.starloader.util.JavaInterop;
-import de.geolykt.starloader.util.OrderedCollection;
+import de.geolykt.starloader.util.PrefixSet;
+import de.geolykt.starloader.util.SortedArrayCollection;
 
 /**
  * Class Loader that can modify class bytecode when they are loaded.
@@ -48,19 +57,31 @@ public class MinestomRootClassLoader extends HierarchyClassLoader implements Tra
     private static final Logger LOGGER = LoggerFactory.getLogger(MinestomRootClassLoader.class);
     private static final boolean DEBUG = Boolean.getBoolean("classloader.debug");
     private static final boolean DUMP = DEBUG || Boolean.getBoolean("classloader.dump");
+    private static final boolean CACHE = Boolean.getBoolean("classloader.cache");
+    private static final boolean MMAP = Boolean.parseBoolean(System.getProperty("classloader.mmap", "true"));
+
+    /**
+     * The packages of the classes that can be loaded by the plattform classloader, or null on Java 8
+     * where there is no such classloader.
+     */
+    @Nullable
+    private static final Set<String> PLATTFORM_PACKAGES = JavaInterop.getPlattformPackages();
 
     private static MinestomRootClassLoader INSTANCE;
 
     @Deprecated
     @ScheduledForRemoval(inVersion = "5.0.0")
-    private de.geolykt.starloader.deobf.access.AccessTransformInfo widener = new de.geolykt.starloader.deobf.access.AccessTransformInfo();
+    private final de.geolykt.starloader.deobf.access.AccessTransformInfo widener = new de.geolykt.starloader.deobf.access.AccessTransformInfo();
 
     /**
      * Classes that cannot be loaded/modified by this classloader.
      * Will go through parent class loader
      */
     private final Set<String> protectedClasses = ConcurrentHashMap.newKeySet();
-    public final Set<String> protectedPackages = ConcurrentHashMap.newKeySet();
+    @NotNull
+    private final PrefixSet protectedPackagePrefixes = new PrefixSet();
+    // The declared type is kept as-is for the sake of binary compatibility
+    public final Set<String> protectedPackages = this.protectedPackagePrefixes;
 
     {
         this.protectedClasses.add("de.geolykt.starloader.Starloader");
@@ -80,17 +101,68 @@ public class MinestomRootClassLoader extends HierarchyClassLoader implements Tra
     }
 
     /**
-     * Used to let ASM find out common super types, without actually committing to loading them
-     * Otherwise ASM would accidentally load classes we might want to modify.
+     * Used to let ASM find out common super types without loading any classes at all.
+     * Classes must never be loaded while transforming a class, as the class loading lock and the
+     * transformation lock of the transformed class are held while doing so.
+     */
+    @NotNull
+    private final ClassHierarchyIndex hierarchyIndex = new ClassHierarchyIndex(this);
+
+    /**
+     * The pool of transformers, in the order the transformers are applied in. The snapshot of the pool
+     * is replaced whenever the pool changes, which allows to read it without holding any locks.
+     */
+    @NotNull
+    private final SortedArrayCollection<ASMTransformer> modifiers = new SortedArrayCollection<>(TransformerIndex.NO_TRANSFORMERS);
+
+    /**
+     * Lock objects used to prevent the same class from being transformed concurrently by several threads.
+     * Transformations of classes with differing names run in parallel.
      */
-    private final URLClassLoader asmClassLoader;
+    @NotNull
+    private final ConcurrentHashMap<String, Object> transformLocks = new ConcurrentHashMap<>();
 
+    /**
+     * Incremented whenever the transformers or access wideners in use change.
+     */
     @NotNull
-    private final Collection<ASMTransformer> modifiers = new OrderedCollection<>();
+    private final AtomicInteger transformGeneration = new AtomicInteger();
+
+    /**
+     * The on-disk cache of transformed classes, or null if caching is disabled.
+     * Caching can be enabled via the "classloader.cache" system property.
+     */
+    @Nullable
+    private final TransformedClassCache cache = CACHE ? TransformedClassCache.createDefault() : null;
+
+    /**
+     * The profile-guided class prefetcher, or null if prefetching is disabled.
+     * Prefetching can be enabled by setting the "classloader.prefetch" system property to true.
+     */
+    @Nullable
+    private final ClassPrefetcher prefetcher = ClassPrefetcher.createDefault(this);
+
+    /**
+     * The fingerprint of the transformation environment used by {@link #cache}.
+     * Null if the fingerprint was not yet computed.
+     */
+    @Nullable
+    private volatile TransformFingerprint transformFingerprint;
+
+    /**
+     * The index of the transformers in {@link #modifiers}. Null if the index needs to be rebuilt.
+     */
+    @Nullable
+    private volatile TransformerIndex transformerIndex;
+
+    /**
+     * The URLs of this classloader, backed by memory-mapped jars where possible.
+     */
+    @NotNull
+    private final MappedClassPath classPath = new MappedClassPath();
 
     private MinestomRootClassLoader(ClassLoader parent) {
         super("Starloader Root ClassLoader", new URL[0], parent);
-        asmClassLoader = newChild();
     }
 
     public static MinestomRootClassLoader getInstance() {
@@ -111,60 +183,207 @@ public class MinestomRootClassLoader extends HierarchyClassLoader implements Tra
             return loadedClass;
         }
 
+        int revision = HierarchyClassLoader.getHierarchyRevision();
+        this.missingClasses.checkMissing(name);
         try {
-            // we do not load system classes by ourselves
-            ClassLoader loader = JavaInterop.getPlattformClassloader();
-            if (loader != null) {
+            return loadClass0(name, resolve);
+        } catch (ClassNotFoundException e) {
+            this.missingClasses.markMissing(name, revision);
+            throw e;
+        }
+    }
+
+    private Class<?> loadClass0(@NotNull String name, boolean resolve) throws ClassNotFoundException {
+
+        // we do not load system classes by ourselves
+        ClassLoader loader = JavaInterop.getPlattformClassloader();
+        if (loader == null) {
+            // Java 8: System classes are loaded by the bootstrap or extension classloader, which are reachable by the parent loader
+            if (name.startsWith("java.")) {
+                return super.loadClass(name, resolve);
+            }
+        } else if (isPlattformClassCandidate(name)) {
+            try {
                 Class<?> systemClass = loader.loadClass(name);
                 LOGGER.trace("Loading system class: {}", systemClass);
                 return systemClass;
+            } catch (ClassNotFoundException e) {
+                // Not a system class after all
             }
-            throw new ClassNotFoundException("Java 9 " + (JavaInterop.isJava9() ? "capable " : "incapable") + " JavaInterop implementation refused to return the plattform classloader.");
-        } catch (ClassNotFoundException e) {
-            try {
-                if (isProtected(name)) {
-                    LOGGER.trace("Protected: {}", name);
-                    return super.loadClass(name, resolve);
-                }
+        }
 
-                return define(name, resolve);
-            } catch (Throwable ex) {
-                LOGGER.trace("Failed to load class \""+ name + "\", resorting to parent loader. Code modifications forbidden. {}", ex);
-                // fail to load class, let parent load
-                // this forbids code modification, but at least it will load
-                try {
-                    return super.loadClass(name, resolve);
-                } catch (ClassNotFoundException cnfe) {
-                    cnfe.addSuppressed(ex);
-                    throw cnfe;
-                }
+        try {
+            if (isProtected(name)) {
+                LOGGER.trace("Protected: {}", name);
+                return super.loadClass(name, resolve);
+            }
+
+            return define(name, resolve);
+        } catch (Throwable ex) {
+            LOGGER.trace("Failed to load class \""+ name + "\", resorting to parent loader. Code modifications forbidden. {}", ex);
+            // fail to load class, let parent load
+            // this forbids code modification, but at least it will load
+            try {
+                return super.loadClass(name, resolve);
+            } catch (ClassNotFoundException cnfe) {
+                cnfe.addSuppressed(ex);
+                throw cnfe;
             }
         }
     }
 
-    private boolean isProtected(String name) {
-        if (!protectedClasses.contains(name)) {
-            for (String start : protectedPackages) {
-                if (name.startsWith(start)) {
-                    return true;
-                }
-            }
-            return false;
+    /**
+     * Checks whether the class with the given name could be loaded by the plattform classloader,
+     * based on the packages of the modules defined to it. Classes that are not part of such a package
+     * do not need to be looked up within the plattform classloader, which saves the (expensive) creation
+     * of {@link ClassNotFoundException ClassNotFoundExceptions}.
+     *
+     * @param name The binary name of the class
+     * @return False if the class is definitely not a plattform class, true otherwise
+     */
+    private static boolean isPlattformClassCandidate(@NotNull String name) {
+        Set<String> packages = MinestomRootClassLoader.PLATTFORM_PACKAGES;
+        if (packages == null) {
+            return true;
         }
-        return true;
+        int lastDot = name.lastIndexOf('.');
+        return lastDot != -1 && packages.contains(name.substring(0, lastDot));
+    }
+
+    private boolean isProtected(String name) {
+        return this.protectedClasses.contains(name) || this.protectedPackagePrefixes.matchesPrefixOf(name);
     }
 
     private Class<?> define(String name, boolean resolve) throws IOException, ClassNotFoundException {
-        try {
-            RawClassData rawClass;
+        ClassNotFoundException notFound;
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> loadedClass = findLoadedClass(name);
+            if (loadedClass != null) {
+                // Defined by another thread while we were waiting for the lock
+                return loadedClass;
+            }
+            Class<?> mappedClass = defineMappedClass(name, resolve);
+            if (mappedClass != null) {
+                ClassPrefetcher prefetcher = this.prefetcher;
+                if (prefetcher != null) {
+                    prefetcher.record(name);
+                }
+                return mappedClass;
+            }
+            RawClassData rawClass = null;
             try {
                 rawClass = loadClassBytes(name, true);
+                notFound = null;
             } catch (Throwable t) {
-                throw new ClassNotFoundException("Unable to load bytes", t);
+                notFound = new ClassNotFoundException("Unable to load bytes", t);
+            }
+            if (rawClass != null) {
+                Class<?> defined = defineRawClass(name, rawClass, resolve);
+                ClassPrefetcher prefetcher = this.prefetcher;
+                if (prefetcher != null) {
+                    prefetcher.record(name);
+                }
+                return defined;
+            }
+        }
+
+        // could not load inside this classloader, attempt with children.
+        // This happens without holding the class loading lock of the root classloader as children delegate
+        // to the root classloader themselves, which could otherwise result in deadlocks.
+        Class<?> defined = loadClassFromDescendants(name, resolve, notFound);
+        LOGGER.trace("Loaded from child {}: {}", defined.getClassLoader(), name);
+        return defined;
+    }
+
+    /**
+     * Defines a class which is not going to be transformed directly from the memory-mapped jar containing it,
+     * without copying the bytecode of the class into a byte array.
+     *
+     * @param name The binary name of the class
+     * @param resolve Whether to resolve the class
+     * @return The defined class, or null if the class needs to be loaded through {@link #loadClassBytes(String, boolean)}
+     * @throws ClassNotFoundException If the bytecode of the class is invalid
+     */
+    @Nullable
+    private Class<?> defineMappedClass(@NotNull String name, boolean resolve) throws ClassNotFoundException {
+        if (DUMP) {
+            return null;
+        }
+        ClassPrefetcher prefetcher = this.prefetcher;
+        if (prefetcher != null && prefetcher.isPrefetched(name)) {
+            // The bytecode was already read
+            return null;
+        }
+        String internalName = name.replace('.', '/');
+        @SuppressWarnings("deprecation")
+        boolean widened = this.widener.isTarget(internalName);
+        if (widened) {
+            return null;
+        }
+        for (ASMTransformer transformer : getTransformerIndex().getCandidates(internalName)) {
+            if (transformer.isValidTarget(internalName)) {
+                return null;
+            }
+        }
+
+        String path = internalName + ".class";
+        MappedJarFile jar = this.classPath.locate(path);
+        if (jar == null) {
+            return null;
+        }
+        ByteBuffer bytecode;
+        try {
+            bytecode = jar.getEntry(path);
+        } catch (IOException e) {
+            LOGGER.debug("Unable to read {} from a memory-mapped jar", path, e);
+            return null;
+        }
+        if (bytecode == null) {
+            return null;
+        }
+        try {
+            Class<?> defined = defineClass(name, bytecode, getProtectionDomain(jar));
+            LOGGER.trace("Loaded from memory-mapped jar: {}", name);
+            if (resolve) {
+                resolveClass(defined);
             }
+            return defined;
+        } catch (LinkageError e) {
+            throw new ClassNotFoundException("Invalid bytecode for class " + name, e);
+        }
+    }
+
+    /**
+     * Obtains the protection domain of the classes defined from a memory-mapped jar. The domain is created once per jar.
+     *
+     * @param jar The jar
+     * @return The protection domain
+     */
+    @NotNull
+    private ProtectionDomain getProtectionDomain(@NotNull MappedJarFile jar) {
+        ProtectionDomain domain = jar.protectionDomain;
+        if (domain == null) {
+            // Mirrors the protection domains created by SecureClassLoader, which caches them by code source instead
+            CodeSource codeSource = jar.getCodeSource();
+            jar.protectionDomain = domain = new ProtectionDomain(codeSource, getPermissions(codeSource), this, null);
+        }
+        return domain;
+    }
+
+    private Class<?> defineRawClass(String name, @NotNull RawClassData rawClass, boolean resolve) throws IOException, ClassNotFoundException {
+        try {
             Class<?> defined;
             byte[] bytes = rawClass.getBytes();
 
+            if (rawClass instanceof MappedClassData) {
+                defined = defineClass(name, bytes, 0, bytes.length, getProtectionDomain(((MappedClassData) rawClass).getJar()));
+                LOGGER.trace("Loaded with code modifiers: {}", name);
+                if (resolve) {
+                    resolveClass(defined);
+                }
+                return defined;
+            }
+
             URL jarURL = rawClass.getSource();
             if (jarURL == null) {
                 defined = defineClass(name, bytes, 0, bytes.length);
@@ -185,20 +404,6 @@ public class MinestomRootClassLoader extends HierarchyClassLoader implements Tra
         } catch (LinkageError e) {
             // Well we did hit the right classloader (so no need to check children), but it did not produce the right output
             throw new ClassNotFoundException("Invalid bytecode for class " + name, e);
-        } catch (ClassNotFoundException e) {
-            // could not load inside this classloader, attempt with children
-            Class<?> defined = null;
-            for (MinestomExtensionClassLoader subloader : children) {
-                try {
-                    defined = subloader.loadClassAsChild(name, resolve);
-                    LOGGER.trace("Loaded from child {}: {}", subloader, name);
-                    return defined;
-                } catch (ClassNotFoundException e1) {
-                    // not found inside this child, move on to next
-                    e.addSuppressed(e1);
-                }
-            }
-            throw e;
         }
     }
 
@@ -217,23 +422,48 @@ public class MinestomRootClassLoader extends HierarchyClassLoader implements Tra
             throw new ClassNotFoundException("Name may not be null.");
         }
         String path = name.replace(".", "/") + ".class";
-        URL url = findResource(path);
-        InputStream input;
-        if (url == null) {
-            input = getResourceAsStream(name);
-        } else {
-            input = url.openStream();
-        }
-        if (input == null) {
+        ClassPrefetcher prefetcher = this.prefetcher;
+        ClassPrefetcher.Entry prefetched = prefetcher == null ? null : prefetcher.take(name);
+        URL url;
+        MappedJarFile jar = null;
+        byte @NotNull[] originalBytes;
+        byte[] transformedBytes = null;
+        if (prefetched != null) {
+            url = prefetched.source;
+            jar = prefetched.jar;
+            originalBytes = prefetched.bytes;
+            if (transform) {
+                transformedBytes = claimPretransformed(name, prefetched);
+            }
+        } else if ((jar = this.classPath.locate(path)) != null) {
+            url = null;
+            ByteBuffer entry = jar.getEntry(path);
+            if (entry == null) {
+                throw new IOException("Entry " + path + " vanished from " + jar.getURL());
+            }
+            originalBytes = MappedJarFile.toByteArray(entry);
+        } else if (this.classPath.isComplete()) {
+            // All URLs of this classloader are memory-mapped jars, none of which contain the class
             throw new ClassNotFoundException("Could not find resource " + path);
-        }
-        byte @NotNull[] originalBytes = JavaInterop.readAllBytes(input);
-        input.close();
-        byte @NotNull[] transformedBytes;
-        if (transform) {
-            transformedBytes = transformBytes(originalBytes, name);
         } else {
-            transformedBytes = originalBytes;
+            url = findResource(path);
+            if (url == null) {
+                InputStream input = getResourceAsStream(name);
+                if (input == null) {
+                    throw new ClassNotFoundException("Could not find resource " + path);
+                }
+                originalBytes = JavaInterop.readAllBytes(input);
+                input.close();
+            } else {
+                originalBytes = HierarchyClassLoader.readResource(url);
+            }
+        }
+        if (transformedBytes == null) {
+            if (transform) {
+                transformedBytes = transformBytes(originalBytes, name);
+            } else {
+                transformedBytes = originalBytes;
+            }
         }
 
         if (DUMP) {
@@ -244,6 +474,9 @@ public class MinestomRootClassLoader extends HierarchyClassLoader implements Tra
             Files.write(Paths.get("classes", path), transformedBytes);
         }
 
+        if (jar != null) {
+            return new MappedClassData(jar, path, transformedBytes);
+        }
         return new RawClassData(url, transformedBytes);
     }
 
@@ -252,76 +485,475 @@ public class MinestomRootClassLoader extends HierarchyClassLoader implements Tra
             throw new ClassNotFoundException();
         }
         String path = name.replace(".", "/") + ".class";
-        InputStream input = getResourceAsStreamWithChildren(path);
-        if (input == null) {
+        URL url = getResourceWithChildren(path);
+        if (url == null) {
             throw new ClassNotFoundException("Could not find resource " + path);
         }
-        byte[] originalBytes = JavaInterop.readAllBytes(input);
-        input.close();
+        byte[] originalBytes = HierarchyClassLoader.readResource(url);
         if (transform) {
             return transformBytes(originalBytes, name);
         }
         return originalBytes;
     }
 
-    synchronized byte @NotNull[] transformBytes(byte @NotNull[] classBytecode, @NotNull String qualifiedName) {
-        if (!isProtected(qualifiedName)) {
-            ClassReader reader = new ClassReader(classBytecode);
-            ClassNode node = new ClassNode();
-            boolean modified = false;
+    private void collectURLs(@NotNull HierarchyClassLoader loader, @NotNull Collection<URL> out) {
+        Collections.addAll(out, loader.getURLs());
+        for (HierarchyClassLoader child : loader.children) {
+            collectURLs(child, out);
+        }
+    }
 
-            reader.accept(node, 0);
-            try {
+    private static final class TransformFingerprint {
+        private final byte @NotNull[] hash;
+        private final int generation;
+        private final int hierarchyRevision;
+
+        /**
+         * The snapshot of the transformer pool the fingerprint was computed from, which is compared by identity
+         * as invalid transformers are removed from the pool without incrementing the generation.
+         */
+        @NotNull
+        private final ASMTransformer @NotNull[] transformers;
+
+        private TransformFingerprint(byte @NotNull[] hash, int generation, int hierarchyRevision, @NotNull ASMTransformer @NotNull[] transformers) {
+            this.hash = hash;
+            this.generation = generation;
+            this.hierarchyRevision = hierarchyRevision;
+            this.transformers = transformers;
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private byte @NotNull[] getTransformFingerprint() {
+        // Both counters are read before the environment is inspected so that concurrent changes
+        // can only ever cause a superfluous recomputation, but never a stale fingerprint.
+        int generation = this.transformGeneration.get();
+        int revision = HierarchyClassLoader.getHierarchyRevision();
+        ASMTransformer[] transformers = this.modifiers.getSnapshot();
+        TransformFingerprint fingerprint = this.transformFingerprint;
+        if (fingerprint != null && fingerprint.generation == generation && fingerprint.hierarchyRevision == revision
+                && fingerprint.transformers == transformers) {
+            return fingerprint.hash;
+        }
+
+        Collection<URL> urls = new LinkedHashSet<>();
+        synchronized (HierarchyClassLoader.class) {
+            collectURLs(this, urls);
+        }
+        List<String> widenerEntries = new ArrayList<>();
+        synchronized (this.widener) {
+            for (de.geolykt.starloader.deobf.access.AccessFlagModifier modifier : this.widener.getModifiers()) {
+                widenerEntries.add((modifier.isCompileOnly ? "compileOnly " : "") + modifier.toAccessWidenerString());
+            }
+        }
+        byte[] hash = TransformedClassCache.computeFingerprint(Arrays.asList(transformers), widenerEntries, urls);
+        this.transformFingerprint = new TransformFingerprint(hash, generation, revision, transformers);
+        return hash;
+    }
+
+    /**
+     * Discards all state derived from the previous snapshot of {@link #modifiers}.
+     * Must be called while holding the lock on {@link #modifiers}.
+     */
+    private void onTransformerPoolChanged() {
+        this.transformerIndex = null;
+        this.transformGeneration.incrementAndGet();
+    }
+
+    @NotNull
+    private TransformerIndex getTransformerIndex() {
+        TransformerIndex index = this.transformerIndex;
+        if (index == null || !index.isIndexOf(this.modifiers.getSnapshot())) {
+            synchronized (this.modifiers) {
+                index = this.transformerIndex;
+                ASMTransformer[] transformers = this.modifiers.getSnapshot();
+                if (index == null || !index.isIndexOf(transformers)) {
+                    this.transformerIndex = index = new TransformerIndex(transformers);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Obtains the transformers that could transform the class with the given internal name, in the order
+     * they should be applied in. This method makes use of {@link ASMTransformer#getTargets()},
+     * {@link ASMTransformer#isValidTarget(String)} and {@link ASMTransformer#getRequiredConstants()},
+     * so no parsing of the class is required.
+     *
+     * @param internalName The internal name of the class
+     * @param classBytecode The untransformed bytecode of the class
+     * @return The applicable transformers
+     */
+    @NotNull
+    private ASMTransformer @NotNull[] getApplicableTransformers(@NotNull String internalName, byte @NotNull[] classBytecode) {
+        TransformerIndex index = getTransformerIndex();
+        ASMTransformer[] candidates = index.getCandidates(internalName);
+        if (candidates.length == 0) {
+            return candidates;
+        }
+        List<ASMTransformer> applicable = new ArrayList<>(candidates.length);
+        ClassReader reader = null;
+        for (ASMTransformer transformer : candidates) {
+            if (DEBUG) {
+                LOGGER.info("{} could be able to transform {}", transformer.getClass().getSimpleName(), internalName);
+            }
+            if (!transformer.isValidTarget(internalName)) {
+                continue;
+            }
+            byte[][] requiredConstants = index.hasRequiredConstants() ? index.getRequiredConstants(transformer) : null;
+            if (requiredConstants != null) {
+                if (reader == null) {
+                    // Only reads the offsets of the constant pool entries
+                    reader = new ClassReader(classBytecode);
+                }
+                if (!ConstantPoolScanner.containsAny(reader, classBytecode, requiredConstants)) {
+                    continue;
+                }
+            }
+            applicable.add(transformer);
+        }
+        return applicable.toArray(new @NotNull ASMTransformer[0]);
+    }
+
+    byte @NotNull[] transformBytes(byte @NotNull[] classBytecode, @NotNull String qualifiedName) {
+        if (isProtected(qualifiedName)) {
+            return classBytecode;
+        }
+        String internalName = qualifiedName.replace('.', '/');
+        ASMTransformer[] transformers = getApplicableTransformers(internalName, classBytecode);
+        @SuppressWarnings("deprecation")
+        boolean widened = widener.isTarget(internalName);
+        if (transformers.length == 0 && !widened) {
+            // No transformer is interested in this class, so there is no point in parsing it
+            return classBytecode;
+        }
+
+        // Only one thread may transform a given class at a time, while classes with other names
+        // can be transformed concurrently. The lock objects are never removed as classes are generally
+        // only transformed once and the amount of transformed classes is bounded.
+        synchronized (getTransformLock(qualifiedName)) {
+            return transformBytes0(classBytecode, qualifiedName, internalName, transformers);
+        }
+    }
+
+    @NotNull
+    private Object getTransformLock(@NotNull String qualifiedName) {
+        Object lock = this.transformLocks.computeIfAbsent(qualifiedName, key -> new Object());
+        if (lock == null) {
+            throw new AssertionError();
+        }
+        return lock;
+    }
+
+    /**
+     * Transforms a prefetched class ahead of time, unless it was already handed out to the classloader.
+     * Called by the worker threads of the {@link ClassPrefetcher}.
+     *
+     * <p>The class is only transformed if all transformers interested in it are {@link ASMTransformer#isSideEffectFree() free
+     * of side effects}, as the result is discarded should the class be claimed in the meantime or the transformers change.
+     * The transformation lock of the class is not held while transforming, so that a thread loading the class never
+     * waits on a speculative transformation.
+     *
+     * @param qualifiedName The binary name of the class
+     * @param entry The prefetched entry of the class
+     */
+    void pretransform(@NotNull String qualifiedName, @NotNull ClassPrefetcher.Entry entry) {
+        synchronized (getTransformLock(qualifiedName)) {
+            if (entry.claimed || entry.transformedBytes != null) {
+                return;
+            }
+        }
+        if (isProtected(qualifiedName)) {
+            return;
+        }
+        int generation = this.transformGeneration.get();
+        String internalName = qualifiedName.replace('.', '/');
+        byte[] transformedBytes;
+        try {
+            ASMTransformer[] transformers = getApplicableTransformers(internalName, entry.bytes);
+            for (ASMTransformer transformer : transformers) {
+                if (!transformer.isSideEffectFree()) {
+                    return;
+                }
+            }
+            @SuppressWarnings("deprecation")
+            boolean widened = this.widener.isTarget(internalName);
+            if (transformers.length == 0 && !widened) {
+                transformedBytes = entry.bytes;
+            } else {
+                transformedBytes = transformBytes0(entry.bytes, qualifiedName, internalName, transformers);
+            }
+        } catch (RuntimeException e) {
+            // The failure is reported again once the class is loaded for real
+            LOGGER.debug("Unable to transform prefetched class {}", qualifiedName, e);
+            return;
+        }
+        synchronized (getTransformLock(qualifiedName)) {
+            if (!entry.claimed) {
+                entry.transformedBytes = transformedBytes;
+                entry.generation = generation;
+            }
+        }
+    }
+
+    private byte @Nullable[] claimPretransformed(@NotNull String qualifiedName, @NotNull ClassPrefetcher.Entry entry) {
+        // Worker threads only hold the lock while publishing their result, so it is never held for long
+        synchronized (getTransformLock(qualifiedName)) {
+            entry.claimed = true;
+            if (entry.transformedBytes != null && entry.generation == this.transformGeneration.get()) {
+                LOGGER.trace("Using prefetched transformed bytecode of {}", qualifiedName);
+                return entry.transformedBytes;
+            }
+            return null;
+        }
+    }
+
+    @NotNull
+    private static TransformationKind max(@NotNull TransformationKind a, @NotNull TransformationKind b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    private static void onTransformed(@NotNull String internalName, @NotNull ASMTransformer transformer, @NotNull List<ASMTransformer> invalidTransformers) {
+        if (DEBUG) {
+            LOGGER.info("{} was transformed by a {}", internalName, transformer.getClass().getSimpleName());
+        }
+        if (!transformer.isValid()) {
+            invalidTransformers.add(transformer);
+        }
+    }
+
+    @NotNull
+    private ClassWriter createClassWriter(@NotNull ClassReader reader, @NotNull TransformationKind kind) {
+        if (kind != TransformationKind.CODE) {
+            // Frames and maximum stack sizes are still valid; The constant pool of the original class can be reused
+            // and methods which are passed through unchanged are copied as-is
+            return new ClassWriter(reader, 0);
+        }
+        // Reusing the constant pool allows methods which were never decoded to be copied as-is
+        return new ClassWriter(reader, ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                String commonSuperClass = hierarchyIndex.getCommonSuperClass(type1, type2);
+                if (commonSuperClass == null) {
+                    // Loading the classes could deadlock against other threads transforming classes,
+                    // so the common super class is approximated instead. This is only correct if either type is an interface,
+                    // otherwise the class will likely fail verification.
+                    LOGGER.warn("Unable to resolve the common super class of {} and {} as neither is loaded nor has a class file; Assuming java/lang/Object", type1, type2);
+                    return "java/lang/Object";
+                }
+                return commonSuperClass;
+            }
+        };
+    }
+
+    @NotNull
+    private static ClassNode readClass(@NotNull ClassReader reader, int readerFlags, boolean lazyMethodBodies) {
+        if (lazyMethodBodies) {
+            return LazyMethodNode.readClass(reader, readerFlags);
+        }
+        ClassNode node = new ClassNode();
+        reader.accept(node, readerFlags);
+        return node;
+    }
+
+    private byte @NotNull[] transformBytes0(byte @NotNull[] classBytecode, @NotNull String qualifiedName, @NotNull String internalName, @NotNull ASMTransformer @NotNull[] transformers) {
+        TransformedClassCache cache = this.cache;
+        String cacheKey = null;
+        if (cache != null) {
+            cacheKey = cache.getKey(getTransformFingerprint(), qualifiedName, classBytecode);
+            byte[] cached = cache.lookup(cacheKey, classBytecode);
+            if (cached != null) {
+                LOGGER.trace("Loaded {} from the transformation cache", qualifiedName);
+                return cached;
+            }
+        }
+        byte[] originalBytecode = classBytecode;
+
+        ClassReader reader = new ClassReader(classBytecode);
+        // Frames are recomputed if any transformer may modify code, in which case parsing them is a waste -
+        // unless a transformer needs to inspect them. Debug information on the other hand is always parsed,
+        // as skipping it would strip line numbers and local variable names from the defined class.
+        boolean codeTransformer = false;
+        boolean framesRequired = false;
+        // Visitor-based transformers consume lazily decoded methods through ClassNode.accept, which is supported
+        boolean lazyMethodBodies = true;
+        for (ASMTransformer transformer : transformers) {
+            codeTransformer |= transformer.getTransformationKind() == TransformationKind.CODE;
+            framesRequired |= transformer.requiresOriginalFrames();
+            lazyMethodBodies &= transformer instanceof ASMVisitorTransformer || transformer.supportsLazyMethodBodies();
+        }
+        int readerFlags = codeTransformer && !framesRequired ? ClassReader.SKIP_FRAMES : 0;
+        // The class as a tree, or null while the class is only available as the bytecode read by the reader
+        ClassNode node = null;
+        // The skeleton of the class as read by the reader, shared by all visitor-based transformers
+        ClassNode skeleton = null;
+        byte[] transformedBytecode = null;
+        // Transformers which are no longer needed. They are removed from the pool in a single batch
+        List<ASMTransformer> invalidTransformers = new ArrayList<>(0);
+        boolean modified = false;
+        // The most invasive kind of modification applied to the class
+        TransformationKind kind = TransformationKind.FLAGS;
+
+        try {
+            synchronized (this.widener) {
                 @SuppressWarnings("deprecation")
-                boolean hack = widener.apply(node, true);
-                modified = hack;
-                synchronized (modifiers) {
-                    Iterator<ASMTransformer> transformers = modifiers.iterator();
-                    while (transformers.hasNext()) {
-                        ASMTransformer transformer = transformers.next();
-                        String internalName = node.name;
-                        if (internalName == null) {
-                            throw new NullPointerException();
-                        }
-                        if (DEBUG) {
-                            LOGGER.info("{} could be able to transform {}", transformer.getClass().getSimpleName(), internalName);
-                        }
-                        if (transformer.isValidTarget(internalName) && transformer.accept(node)) {
-                            if (DEBUG) {
-                                LOGGER.info("{} was transformed by a {}", internalName, transformer.getClass().getSimpleName());
-                            }
-                            if (!transformer.isValid()) {
-                                transformers.remove();
-                            }
-                            modified = true;
-                        }
+                boolean widened = this.widener.isTarget(internalName);
+                if (widened) {
+                    node = readClass(reader, readerFlags, lazyMethodBodies);
+                    @SuppressWarnings("deprecation")
+                    boolean hack = widener.apply(node, true);
+                    modified = hack;
+                }
+            }
+            for (int i = 0; i < transformers.length;) {
+                if (!(transformers[i] instanceof ASMVisitorTransformer)) {
+                    ASMTransformer transformer = transformers[i++];
+                    if (node == null) {
+                        node = readClass(reader, readerFlags, lazyMethodBodies);
                     }
+                    if (transformer.accept(node)) {
+                        kind = max(kind, transformer.getTransformationKind());
+                        onTransformed(internalName, transformer, invalidTransformers);
+                        modified = true;
+                    }
+                    continue;
+                }
+
+                // Chain all consecutive visitor-based transformers into a single pass
+                int passStart = i;
+                TransformationKind passKind = kind;
+                while (i < transformers.length && transformers[i] instanceof ASMVisitorTransformer) {
+                    passKind = max(passKind, transformers[i++].getTransformationKind());
+                }
+                if (readerFlags != 0) {
+                    // The frames of the class need to be recomputed as they were not read
+                    passKind = TransformationKind.CODE;
+                }
+                boolean lastPass = i == transformers.length;
+                ClassNode passSkeleton = node;
+                if (passSkeleton == null) {
+                    if (skeleton == null) {
+                        skeleton = new ClassNode();
+                        reader.accept(skeleton, ClassReader.SKIP_CODE);
+                    }
+                    passSkeleton = skeleton;
+                }
+
+                ClassWriter writer = null;
+                ClassNode passOutput = null;
+                ClassVisitor visitor;
+                if (lastPass) {
+                    writer = createClassWriter(reader, passKind);
+                    visitor = writer;
+                } else {
+                    passOutput = new ClassNode();
+                    visitor = passOutput;
+                }
+                List<ASMTransformer> passTransformers = new ArrayList<>();
+                for (int j = i - 1; j >= passStart; j--) {
+                    ClassVisitor transformingVisitor = ((ASMVisitorTransformer) transformers[j]).createVisitor(passSkeleton, visitor);
+                    if (transformingVisitor != null) {
+                        visitor = transformingVisitor;
+                        passTransformers.add(transformers[j]);
+                    }
+                }
+                if (passTransformers.isEmpty()) {
+                    continue;
+                }
+
+                if (node == null) {
+                    reader.accept(visitor, readerFlags);
+                } else {
+                    node.accept(visitor);
+                }
+                modified = true;
+                for (int j = passTransformers.size() - 1; j >= 0; j--) {
+                    ASMTransformer transformer = passTransformers.get(j);
+                    kind = max(kind, transformer.getTransformationKind());
+                    onTransformed(internalName, transformer, invalidTransformers);
+                }
+                if (writer != null) {
+                    transformedBytecode = writer.toByteArray();
+                } else {
+                    node = passOutput;
                 }
-            } catch (Throwable t) {
-                // Apparently errors would get absorbed otherwise.
-                LOGGER.error("Error within ASM transforming process. CLASS {} WILL NOT BE MODIFIED - THIS MAY BE LETHAL.", qualifiedName, t);
-                throw new RuntimeException("Error within ASM transforming process.", t);
             }
-            try {
-                if (modified) {
-                    ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
-                        @Override
-                        protected ClassLoader getClassLoader() {
-                            return asmClassLoader;
-                        }
-                    };
-                    node.accept(writer);
-                    classBytecode = Objects.requireNonNull(writer.toByteArray());
-                    LOGGER.trace("Modified {}", qualifiedName);
+        } catch (Throwable t) {
+            // Apparently errors would get absorbed otherwise.
+            LOGGER.error("Error within ASM transforming process. CLASS {} WILL NOT BE MODIFIED - THIS MAY BE LETHAL.", qualifiedName, t);
+            throw new RuntimeException("Error within ASM transforming process.", t);
+        } finally {
+            if (!invalidTransformers.isEmpty()) {
+                synchronized (this.modifiers) {
+                    if (this.modifiers.removeAll(invalidTransformers)) {
+                        // The generation is deliberately left untouched: The removed transformers were applied to
+                        // every class they were interested in up to now, so classes transformed ahead of time remain valid.
+                        this.transformerIndex = null;
+                    }
                 }
-            } catch (Throwable t) {
-                LOGGER.error("Unable to write ASM Classnode to bytecode (bork transformer?)", t);
-                throw new RuntimeException("Unable to write ASM Classnode to bytecode", t);
             }
         }
+        try {
+            if (transformedBytecode != null) {
+                classBytecode = transformedBytecode;
+                LOGGER.trace("Modified {}", qualifiedName);
+            } else if (modified && node != null) {
+                ClassWriter writer = createClassWriter(reader, readerFlags == 0 ? kind : TransformationKind.CODE);
+                node.accept(writer);
+                classBytecode = Objects.requireNonNull(writer.toByteArray());
+                LOGGER.trace("Modified {}", qualifiedName);
+            }
+        } catch (Throwable t) {
+            LOGGER.error("Unable to write ASM Classnode to bytecode (bork transformer?)", t);
+            throw new RuntimeException("Unable to write ASM Classnode to bytecode", t);
+        }
+        if (cache != null && cacheKey != null) {
+            cache.store(cacheKey, originalBytecode, classBytecode);
+        }
         return classBytecode;
     }
 
+    @Nullable
+    Class<?> findLoadedClass0(@NotNull String name) {
+        return findLoadedClass(name);
+    }
+
+    @NotNull
+    MappedClassPath getClassPath() {
+        return this.classPath;
+    }
+
+    /**
+     * Starts prefetching the classes that were loaded during the previous run in the background.
+     * Should be called once the URLs of the root classloader have been set up.
+     *
+     * @since 4.0.0
+     */
+    @Internal
+    @AvailableSince(value = "4.0.0-a20261016")
+    public void startPrefetching() {
+        ClassPrefetcher prefetcher = this.prefetcher;
+        if (prefetcher != null) {
+            prefetcher.start();
+        }
+    }
+
+    /**
+     * Transforms the prefetched classes in the background. Should be called once all transformers
+     * have been registered, as prefetched classes are transformed again should the transformers change afterwards.
+     *
+     * @since 4.0.0
+     */
+    @Internal
+    @AvailableSince(value = "4.0.0-a20261016")
+    public void pretransformPrefetchedClasses() {
+        ClassPrefetcher prefetcher = this.prefetcher;
+        if (prefetcher != null) {
+            prefetcher.pretransform();
+        }
+    }
+
     // Overridden to increase access (from protected to public)
     @Override
     public Class<?> findClass(String name) throws ClassNotFoundException {
@@ -359,13 +991,28 @@ public class MinestomRootClassLoader extends HierarchyClassLoader implements Tra
      */
     @Deprecated
     @ScheduledForRemoval(inVersion = "5.0.0")
-    public synchronized void addTransformer(ASMTransformer transformer) {
+    public void addTransformer(ASMTransformer transformer) {
         this.addASMTransformer(Objects.requireNonNull(transformer));
     }
 
+    /**
+     * Discards the index of transformers, forcing it to be rebuilt the next time a class is transformed.
+     * Needs to be called whenever the {@link ASMTransformer#getTargets() declared targets} of a registered
+     * transformer change.
+     *
+     * @since 4.0.0
+     */
+    @AvailableSince(value = "4.0.0-a20261016")
+    public void invalidateTransformerIndex() {
+        synchronized (this.modifiers) {
+            this.transformerIndex = null;
+        }
+    }
+
     @Override
     public void addURL(URL url) {
         super.addURL(url);
+        this.classPath.add(url, MMAP);
     }
 
     /**
@@ -376,19 +1023,21 @@ public class MinestomRootClassLoader extends HierarchyClassLoader implements Tra
      */
     @Deprecated
     @ScheduledForRemoval(inVersion = "5.0.0")
-    public synchronized List<ASMTransformer> getTransformers() {
-        synchronized (modifiers) {
-            return new ArrayList<>(modifiers);
-        }
+    public List<ASMTransformer> getTransformers() {
+        return new ArrayList<>(Arrays.asList(this.modifiers.getSnapshot()));
     }
 
     @Deprecated
     @ScheduledForRemoval(inVersion = "5.0.0")
     public void readAccessWidener(@NotNull InputStream in) throws IOException {
-        try (de.geolykt.starloader.deobf.access.AccessWidenerReader accessReader = new de.geolykt.starloader.deobf.access.AccessWidenerReader(widener, in, true)) {
-            accessReader.readHeader();
-            while (accessReader.readLn()) {
-                // Continue reading
+        synchronized (this.widener) {
+            try (de.geolykt.starloader.deobf.access.AccessWidenerReader accessReader = new de.geolykt.starloader.deobf.access.AccessWidenerReader(widener, in, true)) {
+                accessReader.readHeader();
+                while (accessReader.readLn()) {
+                    // Continue reading
+                }
+            } finally {
+                this.transformGeneration.incrementAndGet();
             }
         }
     }
@@ -402,6 +1051,7 @@ public class MinestomRootClassLoader extends HierarchyClassLoader implements Tra
                 LOGGER.info("Adding transformer {}", transformer.getClass().getName());
             }
             this.modifiers.add(transformer);
+            onTransformerPoolChanged();
             if (DEBUG) {
                 LOGGER.info("Currently registered transformers: ");
                 for (ASMTransformer x : this.modifiers) {
@@ -418,9 +1068,7 @@ public class MinestomRootClassLoader extends HierarchyClassLoader implements Tra
     @Contract(pure = true, value = "-> new")
     @AvailableSince(value = "4.0.0-a20231223")
     public Collection<@NotNull ASMTransformer> getASMTransformers() {
-        synchronized (this.modifiers) {
-            return Collections.unmodifiableCollection(new ArrayList<>(this.modifiers));
-        }
+        return Collections.unmodifiableCollection(Arrays.asList(this.modifiers.getSnapshot().clone()));
     }
 
     @SuppressWarnings("null")
@@ -434,7 +1082,18 @@ public class MinestomRootClassLoader extends HierarchyClassLoader implements Tra
             LOGGER.info("Forcefully defining class '{}'", className);
         }
 
+        synchronized (getClassLoadingLock(className)) {
+            return transformAndDefineClass0(className, data);
+        }
+    }
+
+    @SuppressWarnings("null")
+    @NotNull
+    private Class<?> transformAndDefineClass0(@NotNull String className, @NotNull RawClassData data) {
         byte[] transformed = this.transformBytes(data.getBytes(), className);
+        if (data instanceof MappedClassData) {
+            return super.defineClass(className, transformed, 0, transformed.length, getProtectionDomain(((MappedClassData) data).getJar()));
+        }
         URL jarURL = data.getSource();
 
         if (DUMP) {
@@ -464,4 +1123,8 @@ public class MinestomRootClassLoader extends HierarchyClassLoader implements Tra
             return super.defineClass(className, transformed, 0, transformed.length, new CodeSource(jarURL, (Certificate[]) null));
         }
     }
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
 }
@@ -0,0 +1,86 @@
+package net.minestom.server.extras.selfmodification;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A bounded cache of the names of classes which a classloader was unable to load.
+ *
+ * <p>Libraries and Mixin frequently probe for optional classes, which otherwise would have to go through
+ * the entire lookup cascade each time. The cache is discarded whenever the
+ * {@link HierarchyClassLoader#getHierarchyRevision() classloader hierarchy changes}, as classes could become
+ * available through the added URLs or classloaders. Should the cache grow beyond it's capacity, it is cleared
+ * altogether, which is cheap and good enough given that the same few classes tend to be probed over and over.
+ */
+final class NegativeLookupCache {
+
+    /**
+     * A {@link ClassNotFoundException} which does not record the stack trace, as the stack trace
+     * is the most expensive part of creating an exception.
+     */
+    private static final class MissingClassException extends ClassNotFoundException {
+        private static final long serialVersionUID = 1L;
+
+        private MissingClassException(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static final int CAPACITY = 4096;
+
+    @NotNull
+    private final ConcurrentHashMap<String, Boolean> missing = new ConcurrentHashMap<>();
+
+    private volatile int revision = HierarchyClassLoader.getHierarchyRevision();
+
+    private void validate() {
+        int revision = HierarchyClassLoader.getHierarchyRevision();
+        if (revision != this.revision) {
+            this.missing.clear();
+            this.revision = revision;
+        }
+    }
+
+    /**
+     * Throws a {@link ClassNotFoundException} if the class with the given name is known to be missing.
+     *
+     * @param name The binary name of the class
+     * @throws ClassNotFoundException If the class is known to be missing
+     */
+    void checkMissing(@NotNull String name) throws ClassNotFoundException {
+        if (this.missing.isEmpty()) {
+            return;
+        }
+        validate();
+        if (this.missing.containsKey(name)) {
+            throw new MissingClassException(name + " (negative lookup cached)");
+        }
+    }
+
+    /**
+     * Records that a class could not be found.
+     *
+     * @param name The binary name of the class
+     * @param lookupRevision The revision of the hierarchy at the time the lookup started
+     */
+    void markMissing(@NotNull String name, int lookupRevision) {
+        validate();
+        if (lookupRevision != this.revision) {
+            // The hierarchy changed during the lookup, so the result may be outdated
+            return;
+        }
+        if (this.missing.size() >= NegativeLookupCache.CAPACITY) {
+            this.missing.clear();
+        }
+        this.missing.put(name, Boolean.TRUE);
+        if (lookupRevision != HierarchyClassLoader.getHierarchyRevision()) {
+            this.missing.remove(name);
+        }
+    }
+}
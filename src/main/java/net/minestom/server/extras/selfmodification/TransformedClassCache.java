@@ -0,0 +1,332 @@
+package net.minestom.server.extras.selfmodification;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.geolykt.starloader.transformers.ASMTransformer;
+
+/**
+ * A content-addressed on-disk cache of transformed class bytecode.
+ *
+ * <p>Entries are keyed by the SHA-256 hash of the original bytecode, the name of the class and a fingerprint
+ * of the environment that influences the transformation process (registered transformers, access wideners and
+ * the files on the classpath of the classloader hierarchy). Classes that were not modified by any transformer
+ * are stored as empty files, which allows to skip parsing them altogether on later runs.
+ *
+ * <p>Entries are grouped in a directory per fingerprint. As every change to the environment orphans the entries of the
+ * previous fingerprint, directories of fingerprints that were not used for a while are deleted in the background when the cache
+ * is opened. The retention period in days can be set via the "classloader.cache.maxage" system property and defaults to 7 days.
+ *
+ * <p>Note that transformers are not invoked at all on cache hits. This means that transformers which rely on
+ * side effects (for example Mixin's post-application hooks) may behave differently when the cache is in use,
+ * which is why the cache is disabled by default.
+ */
+final class TransformedClassCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransformedClassCache.class);
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The length of the prefix of keys which denotes the fingerprint and thus the directory of the entry.
+     * Only the first half of the fingerprint is used, which is plenty to tell fingerprints apart.
+     */
+    private static final int FINGERPRINT_LENGTH = 32;
+
+    @NotNull
+    private final Path directory;
+
+    /**
+     * The fingerprints whose directory was already used during this run.
+     */
+    @NotNull
+    private final Set<String> usedFingerprints = ConcurrentHashMap.newKeySet();
+
+    TransformedClassCache(@NotNull Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Deletes the directories of fingerprints which were not used within the given amount of time, as well as
+     * entries of the previous layout that did not group the entries by fingerprint.
+     *
+     * @param maxAge The maximum time since a fingerprint was last used, in milliseconds
+     */
+    private void prune(long maxAge) {
+        long deadline = System.currentTimeMillis() - maxAge;
+        List<Path> stale = new ArrayList<>();
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(this.directory)) {
+            for (Path directory : directories) {
+                if (!Files.isDirectory(directory)) {
+                    continue;
+                }
+                Path fileName = directory.getFileName();
+                if (fileName == null || fileName.toString().length() != FINGERPRINT_LENGTH
+                        || Files.getLastModifiedTime(directory).toMillis() < deadline) {
+                    stale.add(directory);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to prune the transformation cache at {}", this.directory, e);
+            return;
+        }
+        for (Path directory : stale) {
+            String fingerprint = String.valueOf(directory.getFileName());
+            if (this.usedFingerprints.contains(fingerprint)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(directory)) {
+                Iterator<Path> it = files.sorted(Comparator.reverseOrder()).iterator();
+                while (it.hasNext()) {
+                    Files.deleteIfExists(it.next());
+                }
+                LOGGER.debug("Deleted stale transformation cache directory {}", directory);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.debug("Unable to delete stale transformation cache directory {}", directory, e);
+            }
+        }
+    }
+
+    @NotNull
+    private static MessageDigest newDigest() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            if (digest == null) {
+                throw new AssertionError();
+            }
+            return digest;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+
+    private static void digestLong(@NotNull MessageDigest digest, long value) {
+        for (int i = 56; i >= 0; i -= 8) {
+            digest.update((byte) (value >>> i));
+        }
+    }
+
+    private static void digestString(@NotNull MessageDigest digest, @NotNull String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static void digestFile(@NotNull MessageDigest digest, @NotNull Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.walk(path)) {
+                Iterator<Path> it = files.sorted().iterator();
+                while (it.hasNext()) {
+                    Path file = it.next();
+                    if (Files.isRegularFile(file)) {
+                        digestString(digest, path.relativize(file).toString());
+                        digestLong(digest, Files.size(file));
+                        digestLong(digest, Files.getLastModifiedTime(file).toMillis());
+                    }
+                }
+            }
+        } else if (Files.exists(path)) {
+            digestLong(digest, Files.size(path));
+            digestLong(digest, Files.getLastModifiedTime(path).toMillis());
+        }
+    }
+
+    private static void digestURL(@NotNull MessageDigest digest, @Nullable URL url) {
+        if (url == null) {
+            return;
+        }
+        digestString(digest, url.toExternalForm());
+        if (!url.getProtocol().equals("file")) {
+            return;
+        }
+        try {
+            digestFile(digest, Paths.get(url.toURI()));
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            LOGGER.debug("Unable to fingerprint URL {}", url, e);
+        }
+    }
+
+    /**
+     * Computes the fingerprint of the environment in which classes are transformed.
+     * Whenever any of the arguments changes, the fingerprint changes with it.
+     *
+     * @param transformers The transformers that are currently registered, in the order they are applied in.
+     * @param widenerEntries The string representations of the access widener entries that are currently in use.
+     * @param urls The URLs of all classloaders within the classloader hierarchy.
+     * @return The fingerprint
+     */
+    static byte @NotNull[] computeFingerprint(@NotNull Collection<ASMTransformer> transformers, @NotNull Collection<String> widenerEntries, @NotNull Collection<URL> urls) {
+        MessageDigest digest = newDigest();
+        for (ASMTransformer transformer : transformers) {
+            Class<?> transformerClass = transformer.getClass();
+            digestString(digest, transformerClass.getName());
+            digestLong(digest, transformer.getPriority());
+            CodeSource source = transformerClass.getProtectionDomain().getCodeSource();
+            if (source != null) {
+                digestURL(digest, source.getLocation());
+            }
+        }
+        digest.update((byte) 1);
+        for (String entry : widenerEntries) {
+            digestString(digest, entry);
+        }
+        digest.update((byte) 2);
+        for (URL url : urls) {
+            digestURL(digest, url);
+        }
+        byte[] fingerprint = digest.digest();
+        if (fingerprint == null) {
+            throw new AssertionError();
+        }
+        return fingerprint;
+    }
+
+    @NotNull
+    static TransformedClassCache createDefault() {
+        String dir = System.getProperty("classloader.cache.dir");
+        Path path;
+        if (dir == null) {
+            path = new File(de.geolykt.starloader.launcher.Utils.getApplicationFolder(), "classcache").toPath();
+        } else {
+            path = Paths.get(dir);
+        }
+        if (path == null) {
+            throw new AssertionError();
+        }
+        LOGGER.info("Caching transformed classes at {}", path.toAbsolutePath());
+        TransformedClassCache cache = new TransformedClassCache(path);
+        long maxAge = TimeUnit.DAYS.toMillis(Long.getLong("classloader.cache.maxage", 7));
+        Thread pruner = new Thread(() -> cache.prune(maxAge), "Starloader transformation cache pruner");
+        pruner.setDaemon(true);
+        pruner.start();
+        return cache;
+    }
+
+    /**
+     * Computes the key under which the transformed variant of a class is stored.
+     *
+     * @param fingerprint The fingerprint as obtained through {@link #computeFingerprint(Collection, Collection, Collection)}.
+     * @param name The binary name of the class
+     * @param originalBytes The untransformed bytecode of the class
+     * @return The key of the cache entry
+     */
+    @NotNull
+    String getKey(byte @NotNull[] fingerprint, @NotNull String name, byte @NotNull[] originalBytes) {
+        MessageDigest digest = newDigest();
+        digest.update(fingerprint);
+        digestString(digest, name);
+        digest.update(originalBytes);
+        StringBuilder key = new StringBuilder();
+        TransformedClassCache.appendHex(key, fingerprint, FINGERPRINT_LENGTH / 2);
+        TransformedClassCache.appendHex(key, digest.digest(), Integer.MAX_VALUE);
+        return key.toString();
+    }
+
+    private static void appendHex(@NotNull StringBuilder out, byte @NotNull[] bytes, int maxLength) {
+        for (int i = 0; i < bytes.length && i < maxLength; i++) {
+            out.append(HEX_DIGITS[(bytes[i] >> 4) & 0x0F]);
+            out.append(HEX_DIGITS[bytes[i] & 0x0F]);
+        }
+    }
+
+    @NotNull
+    private Path getPath(@NotNull String key) {
+        String fingerprint = key.substring(0, FINGERPRINT_LENGTH);
+        String entry = key.substring(FINGERPRINT_LENGTH);
+        Path fingerprintDirectory = this.directory.resolve(fingerprint);
+        if (this.usedFingerprints.add(fingerprint)) {
+            // Mark the fingerprint as used so that its entries are not pruned
+            try {
+                Files.setLastModifiedTime(fingerprintDirectory, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (NoSuchFileException e) {
+                // Created by the first store
+            } catch (IOException e) {
+                LOGGER.debug("Unable to mark transformation cache directory {} as used", fingerprintDirectory, e);
+            }
+        }
+        Path path = fingerprintDirectory.resolve(entry.substring(0, 2)).resolve(entry + ".class");
+        if (path == null) {
+            throw new AssertionError();
+        }
+        return path;
+    }
+
+    /**
+     * Obtains the transformed bytecode stored under the given key.
+     *
+     * @param key The key of the entry, as obtained by {@link #getKey(byte[], String, byte[])}.
+     * @param originalBytes The untransformed bytecode of the class
+     * @return The transformed bytecode, or null if there is no such entry. If the class was not modified, the original bytes are returned.
+     */
+    public byte @Nullable[] lookup(@NotNull String key, byte @NotNull[] originalBytes) {
+        try {
+            byte[] cached = Files.readAllBytes(getPath(key));
+            if (cached.length == 0) {
+                return originalBytes;
+            }
+            return cached;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.debug("Unable to read cache entry {}", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the transformed bytecode of a class under the given key.
+     * Failures are logged but are otherwise ignored.
+     *
+     * @param key The key of the entry, as obtained by {@link #getKey(byte[], String, byte[])}.
+     * @param originalBytes The untransformed bytecode of the class
+     * @param transformedBytes The transformed bytecode of the class
+     */
+    public void store(@NotNull String key, byte @NotNull[] originalBytes, byte @NotNull[] transformedBytes) {
+        Path path = getPath(key);
+        Path parent = path.getParent();
+        try {
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tempFile = Files.createTempFile(parent, key.substring(FINGERPRINT_LENGTH), ".tmp");
+            if (transformedBytes != originalBytes) {
+                Files.write(tempFile, transformedBytes);
+            }
+            try {
+                Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write cache entry {}", key, e);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package net.minestom.server.extras.selfmodification;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import de.geolykt.starloader.transformers.ASMTransformer;
+import de.geolykt.starloader.transformers.TransformationTargets;
+
+/**
+ * An immutable dispatch index that maps the internal names of classes to the transformers that
+ * could potentially transform them, based on {@link ASMTransformer#getTargets()}.
+ */
+final class TransformerIndex {
+
+    @NotNull
+    static final ASMTransformer @NotNull[] NO_TRANSFORMERS = new ASMTransformer[0];
+
+    /**
+     * All transformers of the index, in the order they should be applied in.
+     */
+    @NotNull
+    private final ASMTransformer @NotNull[] transformers;
+
+    /**
+     * Indices of the transformers that target all classes.
+     */
+    private final int @NotNull[] global;
+
+    /**
+     * Indices of the transformers that target a given class explicitly.
+     */
+    @NotNull
+    private final Map<String, int[]> exact;
+
+    @NotNull
+    private final String @NotNull[] prefixes;
+
+    /**
+     * Indices of the transformers targeting the prefix at the same position in {@link #prefixes}.
+     */
+    private final int @NotNull[] prefixOwners;
+
+    /**
+     * The encoded {@link ASMTransformer#getRequiredConstants() required constants} of the transformers that require any.
+     */
+    @NotNull
+    private final Map<ASMTransformer, byte[][]> requiredConstants = new IdentityHashMap<>();
+
+    TransformerIndex(@NotNull ASMTransformer @NotNull[] transformers) {
+        this.transformers = transformers;
+        List<Integer> global = new ArrayList<>();
+        Map<String, List<Integer>> exact = new HashMap<>();
+        List<String> prefixes = new ArrayList<>();
+        List<Integer> prefixOwners = new ArrayList<>();
+
+        for (int i = 0; i < transformers.length; i++) {
+            Collection<String> constants = transformers[i].getRequiredConstants();
+            if (!constants.isEmpty()) {
+                this.requiredConstants.put(transformers[i], ConstantPoolScanner.encode(constants));
+            }
+            TransformationTargets targets = transformers[i].getTargets();
+            if (targets.isAll()) {
+                global.add(i);
+                continue;
+            }
+            for (String name : targets.getClasses()) {
+                exact.computeIfAbsent(name, key -> new ArrayList<>()).add(i);
+            }
+            for (String prefix : targets.getPrefixes()) {
+                prefixes.add(prefix);
+                prefixOwners.add(i);
+            }
+        }
+
+        this.global = toArray(global);
+        this.exact = new HashMap<>();
+        exact.forEach((name, owners) -> this.exact.put(name, toArray(owners)));
+        this.prefixes = prefixes.toArray(new @NotNull String[0]);
+        this.prefixOwners = toArray(prefixOwners);
+    }
+
+    private static int @NotNull[] toArray(@NotNull List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Obtains the encoded constants of which one needs to be present in the constant pool of a class for the
+     * transformer to be applicable.
+     *
+     * @param transformer The transformer
+     * @return The encoded constants, or null if the transformer does not require any constants
+     */
+    byte @Nullable[] @NotNull[] getRequiredConstants(@NotNull ASMTransformer transformer) {
+        return this.requiredConstants.get(transformer);
+    }
+
+    /**
+     * Checks whether any of the transformers of this index require constants.
+     *
+     * @return True if {@link #getRequiredConstants(ASMTransformer)} returns a non-null value for any transformer
+     */
+    boolean hasRequiredConstants() {
+        return !this.requiredConstants.isEmpty();
+    }
+
+    /**
+     * Checks whether this index was built from the given array of transformers.
+     *
+     * @param transformers The transformers
+     * @return True if the index was built from the very same array instance
+     */
+    boolean isIndexOf(@NotNull ASMTransformer @NotNull[] transformers) {
+        return this.transformers == transformers;
+    }
+
+    /**
+     * Obtains the transformers which are potentially interested in the class with the given internal name.
+     * The transformers are returned in the order they should be applied in.
+     *
+     * @param internalName The internal name of the class
+     * @return The candidate transformers. Do not modify the returned array.
+     */
+    @NotNull
+    ASMTransformer @NotNull[] getCandidates(@NotNull String internalName) {
+        int[] exact = this.exact.get(internalName);
+        boolean[] matched = null;
+        int matchCount = 0;
+
+        for (int i = 0; i < this.prefixes.length; i++) {
+            if (internalName.startsWith(this.prefixes[i])) {
+                if (matched == null) {
+                    matched = new boolean[this.transformers.length];
+                }
+                if (!matched[this.prefixOwners[i]]) {
+                    matched[this.prefixOwners[i]] = true;
+                    matchCount++;
+                }
+            }
+        }
+
+        if (matched == null) {
+            if (exact == null) {
+                if (this.global.length == 0) {
+                    return NO_TRANSFORMERS;
+                } else if (this.global.length == this.transformers.length) {
+                    return this.transformers;
+                }
+            }
+            matched = new boolean[this.transformers.length];
+        }
+
+        if (exact != null) {
+            for (int owner : exact) {
+                if (!matched[owner]) {
+                    matched[owner] = true;
+                    matchCount++;
+                }
+            }
+        }
+        for (int owner : this.global) {
+            if (!matched[owner]) {
+                matched[owner] = true;
+                matchCount++;
+            }
+        }
+
+        ASMTransformer[] candidates = new ASMTransformer[matchCount];
+        for (int i = 0, j = 0; i < matched.length; i++) {
+            if (matched[i]) {
+                candidates[j++] = this.transformers[i];
+            }
+        }
+        return candidates;
+    }
+}
@@ -1,15 +1,30 @@
 package de.geolykt.starloader.util;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
+import org.jetbrains.annotations.ApiStatus.AvailableSince;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
 
 import net.minestom.server.extras.selfmodification.HierarchyClassLoader;
 
 public final class JavaInterop {
 
+    /**
+     * The maximum size of the per-thread scratch buffers used by {@link #readAllBytes(InputStream, int)}.
+     * Larger buffers are not retained so that reading a single large resource does not pin the memory forever.
+     */
+    private static final int MAX_SCRATCH_BUFFER_SIZE = 1 << 20;
+
+    @NotNull
+    private static final ThreadLocal<byte @NotNull[]> SCRATCH_BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+
     @SuppressWarnings("null")
     @NotNull
     public static final String getClassloaderName(ClassLoader loader) {
@@ -21,10 +36,100 @@ public final class JavaInterop {
     }
 
     public static final byte[] readAllBytes(@NotNull InputStream in) throws IOException {
-        return in.readAllBytes();
+        return readAllBytes(in, -1);
+    }
+
+    /**
+     * Reads all remaining bytes from the given stream. If the size of the contents of the stream is known beforehand,
+     * for example from {@link java.util.zip.ZipEntry#getSize()} or {@link java.net.URLConnection#getContentLength()},
+     * the returned array is allocated exactly once. Otherwise the contents are read into a scratch buffer that is
+     * reused by the calling thread, after which they are copied into an array of the exact size.
+     *
+     * <p>The size hint is only used as a hint: Streams which turn out to be longer or shorter are still read correctly.
+     *
+     * @param in The stream to read from. The stream is not closed.
+     * @param sizeHint The expected amount of bytes within the stream, or a negative value if unknown
+     * @return The contents of the stream
+     * @throws IOException If an I/O error occurs
+     * @since 4.0.0
+     */
+    @AvailableSince(value = "4.0.0-a20261016")
+    public static final byte @NotNull[] readAllBytes(@NotNull InputStream in, int sizeHint) throws IOException {
+        byte[] contents;
+        int length;
+        if (sizeHint >= 0) {
+            contents = new byte[sizeHint];
+            length = readFully(in, contents, 0);
+            if (length < sizeHint) {
+                return Arrays.copyOf(contents, length);
+            }
+            int next = in.read();
+            if (next == -1) {
+                return contents;
+            }
+            // The stream is longer than expected; continue within the scratch buffer
+            byte[] scratch = getScratchBuffer(Math.max(sizeHint * 2, 4096));
+            System.arraycopy(contents, 0, scratch, 0, sizeHint);
+            scratch[sizeHint] = (byte) next;
+            contents = scratch;
+            length = sizeHint + 1;
+        } else {
+            contents = getScratchBuffer(0);
+            length = 0;
+        }
+        while (true) {
+            length = readFully(in, contents, length);
+            if (length < contents.length) {
+                break;
+            }
+            contents = Arrays.copyOf(contents, contents.length * 2);
+        }
+        if (contents.length <= MAX_SCRATCH_BUFFER_SIZE) {
+            SCRATCH_BUFFER.set(contents);
+        }
+        return Arrays.copyOf(contents, length);
+    }
+
+    private static int readFully(@NotNull InputStream in, byte @NotNull[] buffer, int offset) throws IOException {
+        while (offset < buffer.length) {
+            int read = in.read(buffer, offset, buffer.length - offset);
+            if (read == -1) {
+                break;
+            }
+            offset += read;
+        }
+        return offset;
+    }
+
+    private static byte @NotNull[] getScratchBuffer(int minimumSize) {
+        byte[] buffer = SCRATCH_BUFFER.get();
+        if (buffer.length < minimumSize) {
+            buffer = new byte[minimumSize];
+        }
+        return buffer;
     }
 
     public static final ClassLoader getPlattformClassloader() {
         return ClassLoader.getPlatformClassLoader();
     }
+
+    /**
+     * Obtains the names of all packages (in dot notation) of the modules that are defined to the
+     * bootstrap or the plattform classloader.
+     *
+     * @return The packages visible to the plattform classloader, or null if they cannot be determined.
+     */
+    @Nullable
+    @Unmodifiable
+    public static final Set<String> getPlattformPackages() {
+        ClassLoader plattformLoader = ClassLoader.getPlatformClassLoader();
+        Set<String> packages = new HashSet<>();
+        for (Module module : ModuleLayer.boot().modules()) {
+            ClassLoader loader = module.getClassLoader();
+            if (loader == null || loader == plattformLoader) {
+                packages.addAll(module.getPackages());
+            }
+        }
+        return Collections.unmodifiableSet(packages);
+    }
 }